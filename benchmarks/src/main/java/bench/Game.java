@@ -0,0 +1,166 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Calls into MinesweeperBoard and MinesweeperAlg for the benchmarks.
+ *
+ * The game is in the default package, which JMH cannot generate code for and which no
+ * 		other package can import, so the benchmarks reach it through method handles. The
+ * 		handles are static final constants, which the JIT inlines like a direct call, so
+ * 		they do not change what is measured.
+ *
+ * @author Haoxian (Roger) Hu
+ */
+final class Game {
+
+	private static final MethodHandle NEW_BOARD;
+	private static final MethodHandle INIT;
+	private static final MethodHandle RESET_ALL;
+	private static final MethodHandle ADD_MINES;
+	private static final MethodHandle REVEAL;
+	private static final MethodHandle REMOVE_LISTENER;
+	private static final MethodHandle NEW_ALG;
+	private static final MethodHandle UPDATE;
+	private static final MethodHandle CALCULATE_PROBABILITY;
+	private static final MethodHandle SET_EXACT;
+	private static final MethodHandle SET_PARALLEL;
+
+	static {
+		try {
+			MethodHandles.Lookup l = MethodHandles.publicLookup();
+			Class<?> board = Class.forName("MinesweeperBoard");
+			Class<?> alg = Class.forName("MinesweeperAlg");
+			Class<?> listener = Class.forName("MinesweeperListener");
+			Class<?> intList = Class.forName("IntList");
+			NEW_BOARD = erase(l.findConstructor(board,
+					MethodType.methodType(void.class, int.class, int.class, int.class, long.class)));
+			INIT = erase(l.findVirtual(board, "init", MethodType.methodType(void.class, int.class, int.class)));
+			RESET_ALL = erase(l.findVirtual(board, "resetAll", MethodType.methodType(void.class)));
+			ADD_MINES = erase(l.findVirtual(board, "addMines", MethodType.methodType(void.class, int.class, int.class)));
+			REVEAL = erase(l.findVirtual(board, "reveal", MethodType.methodType(intList, int.class, int.class)));
+			REMOVE_LISTENER = erase(l.findVirtual(board, "removeListener", MethodType.methodType(void.class, listener)));
+			NEW_ALG = erase(l.findConstructor(alg, MethodType.methodType(void.class, board)));
+			UPDATE = erase(l.findVirtual(alg, "update", MethodType.methodType(void.class)));
+			CALCULATE_PROBABILITY = erase(l.findVirtual(alg, "calculateProbability", MethodType.methodType(double[][].class)));
+			SET_EXACT = erase(l.findVirtual(alg, "setExactProbability", MethodType.methodType(void.class, boolean.class)));
+			SET_PARALLEL = erase(l.findVirtual(alg, "setParallelProbability", MethodType.methodType(void.class, boolean.class)));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private Game() {
+	}
+
+	/**
+	 * Helper method to turn every game class in the type of a handle into Object
+	 */
+	private static MethodHandle erase(MethodHandle h) {
+		MethodType t = h.type();
+		for (int i=0;i<t.parameterCount();i++)
+			if (!t.parameterType(i).isPrimitive())
+				t = t.changeParameterType(i, Object.class);
+		if (!t.returnType().isPrimitive())
+			t = t.changeReturnType(Object.class);
+		return h.asType(t);
+	}
+
+	static Object newBoard(int r, int c, int s, long seed) {
+		try {
+			return (Object)NEW_BOARD.invokeExact(r, c, s, seed);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	static void init(Object board, int x, int y) {
+		try {
+			INIT.invokeExact(board, x, y);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	static void resetAll(Object board) {
+		try {
+			RESET_ALL.invokeExact(board);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	static void addMines(Object board, int x, int y) {
+		try {
+			ADD_MINES.invokeExact(board, x, y);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	static Object reveal(Object board, int x, int y) {
+		try {
+			return (Object)REVEAL.invokeExact(board, x, y);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	static void removeListener(Object board, Object listener) {
+		try {
+			REMOVE_LISTENER.invokeExact(board, listener);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	static Object newAlg(Object board) {
+		try {
+			return (Object)NEW_ALG.invokeExact(board);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	static void update(Object alg) {
+		try {
+			UPDATE.invokeExact(alg);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	static Object calculateProbability(Object alg) {
+		try {
+			return (Object)CALCULATE_PROBABILITY.invokeExact(alg);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	static void setExactProbability(Object alg, boolean b) {
+		try {
+			SET_EXACT.invokeExact(alg, b);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	static void setParallelProbability(Object alg, boolean b) {
+		try {
+			SET_PARALLEL.invokeExact(alg, b);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	private static RuntimeException rethrow(Throwable e) {
+		if (e instanceof RuntimeException)
+			return (RuntimeException)e;
+		if (e instanceof Error)
+			throw (Error)e;
+		return new RuntimeException(e);
+	}
+}
@@ -0,0 +1,63 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Making a board: placing the mines with addMines(), and init(), which also clears the
+ * 		board and fills in the numbers with initLabels().
+ *
+ * @author Haoxian (Roger) Hu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerateBenchmark {
+
+	@Param
+	public Size size;
+
+	private Object board;
+	private int x;
+	private int y;
+
+	@Setup
+	public void setup() {
+		board = Game.newBoard(size.rows, size.cols, size.mines, 1);
+		x = size.rows / 2;
+		y = size.cols / 2;
+	}
+
+	/**
+	 * Clearing the board and placing the mines, with a safe zone around the middle square
+	 */
+	@Benchmark
+	public Object addMines() {
+		Game.resetAll(board);
+		Game.addMines(board, x, y);
+		return board;
+	}
+
+	/**
+	 * Clearing the board, placing the mines and filling in the numbers
+	 */
+	@Benchmark
+	public Object init() {
+		Game.init(board, x, y);
+		return board;
+	}
+}
@@ -0,0 +1,68 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The first click on a board, which always opens an area with the flood fill in
+ * 		revealAllNear(). The boards are made again before every call, outside of the
+ * 		measured time, and are all the same board. A call clicks on BATCH boards, so that
+ * 		a call on the small boards, which takes microseconds, is long enough that the
+ * 		timer around it does not count.
+ *
+ * @author Haoxian (Roger) Hu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RevealBenchmark {
+
+	//Boards clicked on by every call of reveal()
+	static final int BATCH = 64;
+
+	@Param
+	public Size size;
+
+	private final Object[] boards = new Object[BATCH];
+	private final Object[] opened = new Object[BATCH];
+	private int x;
+	private int y;
+
+	@Setup
+	public void setup() {
+		for (int k=0;k<BATCH;k++)
+			boards[k] = Game.newBoard(size.rows, size.cols, size.mines, 1);
+		x = size.rows / 2;
+		y = size.cols / 2;
+	}
+
+	@Setup(Level.Invocation)
+	public void hide() {
+		for (Object board : boards)
+			Game.init(board, x, y);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public Object reveal() {
+		for (int k=0;k<BATCH;k++)
+			opened[k] = Game.reveal(boards[k], x, y);
+		return opened;
+	}
+}
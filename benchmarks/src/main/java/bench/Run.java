@@ -0,0 +1,28 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks like the JMH main class does, taking the same command line options,
+ * 		but always with the GC profiler so that the allocation rate of every benchmark is
+ * 		reported next to its throughput.
+ *
+ * @author Haoxian (Roger) Hu
+ */
+public final class Run {
+
+	private Run() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options opts = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(opts).run();
+	}
+}
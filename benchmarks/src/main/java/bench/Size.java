@@ -0,0 +1,24 @@
+package bench;
+
+/**
+ * Board sizes the benchmarks are run on. Easy, Medium and Hard are the sizes of the menu
+ * 		of the game, and HUGE has the same density of mines as its Huge board.
+ *
+ * @author Haoxian (Roger) Hu
+ */
+public enum Size {
+	EASY(9, 9, 10),
+	MEDIUM(16, 16, 40),
+	HARD(16, 30, 100),
+	HUGE(1000, 1000, 160000);
+
+	final int rows;
+	final int cols;
+	final int mines;
+
+	Size(int r, int c, int m) {
+		rows = r;
+		cols = c;
+		mines = m;
+	}
+}
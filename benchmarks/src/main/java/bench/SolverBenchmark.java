@@ -0,0 +1,112 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The algorithm on the board left by the first click: update() finding every square that
+ * 		can be solved, and calculateProbability() with the heuristic, the exact and the
+ * 		parallel exact probabilities.
+ *
+ * update() needs a new algorithm every time, which is made before every call outside of the
+ * 		measured time. A call solves BATCH boards, so that a call on the small boards, which
+ * 		takes microseconds, is long enough that the timer around it does not count.
+ *
+ * @author Haoxian (Roger) Hu
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolverBenchmark {
+
+	//Boards solved by every call of update()
+	static final int BATCH = 16;
+
+	/**
+	 * New algorithms before every call of update(), made before the first click so that
+	 * 		they have everything the click revealed left to solve. The boards are all the
+	 * 		same board.
+	 */
+	@State(Scope.Thread)
+	public static class Fresh {
+		@Param
+		public Size size;
+
+		final Object[] boards = new Object[BATCH];
+		final Object[] algs = new Object[BATCH];
+
+		@Setup
+		public void setup() {
+			for (int k=0;k<BATCH;k++)
+				boards[k] = Game.newBoard(size.rows, size.cols, size.mines, 1);
+		}
+
+		@Setup(Level.Invocation)
+		public void click() {
+			for (int k=0;k<BATCH;k++) {
+				if (algs[k] != null)
+					Game.removeListener(boards[k], algs[k]);
+				Game.init(boards[k], size.rows / 2, size.cols / 2);
+				algs[k] = Game.newAlg(boards[k]);
+				Game.reveal(boards[k], size.rows / 2, size.cols / 2);
+			}
+		}
+	}
+
+	/**
+	 * An algorithm that is done with update(), for calculateProbability()
+	 */
+	@State(Scope.Thread)
+	public static class Solved {
+		@Param
+		public Size size;
+
+		@Param({"heuristic", "exact", "parallel"})
+		public String mode;
+
+		Object alg;
+
+		@Setup
+		public void setup() {
+			Object board = Game.newBoard(size.rows, size.cols, size.mines, 1);
+			Game.init(board, size.rows / 2, size.cols / 2);
+			Game.reveal(board, size.rows / 2, size.cols / 2);
+			alg = Game.newAlg(board);
+			Game.setExactProbability(alg, !mode.equals("heuristic"));
+			Game.setParallelProbability(alg, mode.equals("parallel"));
+			Game.update(alg);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public Object update(Fresh s) {
+		for (Object alg : s.algs)
+			Game.update(alg);
+		return s.algs;
+	}
+
+	/**
+	 * Solved components are remembered between calls, so the exact modes measure the
+	 * 		cost of a call where nothing changed, apart from the first call of every fork.
+	 */
+	@Benchmark
+	public Object calculateProbability(Solved s) {
+		return Game.calculateProbability(s.alg);
+	}
+}
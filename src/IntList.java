@@ -0,0 +1,82 @@
+
+import java.util.Arrays;
+
+/**
+ * Growable list of ints that does not box its values like an ArrayList<Integer> does.
+ * 		It can also be used as a stack with add() and pop(). Positions of squares are
+ * 		stored in it as row*COLS+column.
+ *
+ * @author Haoxian (Roger) Hu
+ */
+public final class IntList {
+
+	private int[] data;
+	private int size = 0;
+
+	/**
+	 * Constructor
+	 */
+	public IntList() {
+		this(16);
+	}
+
+	/**
+	 * Constructor
+	 * @param capacity, number of values that fit before the list has to grow
+	 */
+	public IntList(int capacity) {
+		data = new int[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Add a value to the end of the list
+	 * @param n
+	 */
+	public void add(int n) {
+		if (size == data.length)
+			data = Arrays.copyOf(data, (int)Math.min(2L * data.length, Integer.MAX_VALUE - 8));
+		data[size++] = n;
+	}
+
+	/**
+	 * Remove and return the value at the end of the list
+	 * @return int
+	 */
+	public int pop() {
+		if (size == 0)
+			throw new IllegalStateException("List is empty!");
+		return data[--size];
+	}
+
+	/**
+	 * @param i, index in the list
+	 * @return value at index i
+	 */
+	public int get(int i) {
+		if (i >= size)
+			throw new IndexOutOfBoundsException(i);
+		return data[i];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Remove every value, keeping the memory for later use
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return copy of the values in the list
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(data, size);
+	}
+}
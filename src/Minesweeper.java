@@ -1,14 +1,20 @@
 
 import java.awt.Toolkit;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
 import javafx.scene.input.MouseButton;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 public final class Minesweeper extends Application {
@@ -21,19 +27,39 @@ public final class Minesweeper extends Application {
 	//Used to set up the main scene
 	private boolean firstCall = true;
 	
-	//Board of the game
+	//Board of the game and the view that shows it
 	private MinesweeperBoard board;
+	private MinesweeperView view;
 	
-	//Algorithm and whether to deploy algorithm
-	private MinesweeperAlg alg;
+	//Whether the board is drawn on a Canvas instead of with a Label for every square
+	private boolean canvasView = false;
+	
+	//Boards with more squares than this are always drawn on a Canvas
+	private static final int MAX_LABELS = 10000;
+	
+	//Runs the algorithm in the background, null until the algorithm is deployed, and whether to deploy algorithm
+	private MinesweeperSolver solver;
 	private boolean deployAlg = false;
 	
+	//Saved game the board was loaded from and a snapshot of it before any move, for the solver to go on from, null if none
+	private MinesweeperSave loaded;
+	private MinesweeperSnapshot loadedStart;
+	
+	//Records every game to the file given with -Dminesweeper.record=FILE, null if not recording
+	private MinesweeperRecordWriter recorder;
+	
+	//Whether the current game is being recorded, which games loaded in the middle are not
+	private boolean recording = false;
+	
 	//Whether game is still active, used to allow or reject player movement
 	private boolean solved = false;
 	
 	//Current position of player, defaulted to start at bottom left
 	private int[] currentPos = new int[] {ROWS,COLS};
 	
+	//Batch of moves that every click of the user is made with
+	private MinesweeperMoves clicks;
+	
 	//Pane containing the following labels about game status, instructions, and the creator
 	private VBox vb = new VBox();
 	private HBox hb = new HBox();
@@ -48,6 +74,7 @@ public final class Minesweeper extends Application {
 	private Button hints = new Button("Enable Algorithm");
 	private int cheatsUsed = 0;
 	private Button cheat = new Button("Reveal a Square ("+(3-cheatsUsed)+" left)");
+	private Button save = new Button("Save");
 	
 	//The following labels are self explanatory
 	private Label uBad = new Label("You stepped on a mine!");
@@ -70,14 +97,93 @@ public final class Minesweeper extends Application {
 		stage = arg0;
 		stage.setTitle("Minesweeper V1 - HHX");
 		
+		//Counts are always readable through JMX, and are on with -Dminesweeper.metrics=true
+		MinesweeperMetrics.register();
+		
+		String record = System.getProperty("minesweeper.record");
+		if (record != null)
+			recorder = MinesweeperRecordWriter.open(Path.of(record));
+		
 		showMenu();
 	}
 	
+	/**
+	 * Called when the program is closed, to finish writing the recorded games
+	 */
+	@Override
+	public void stop() throws Exception {
+		if (recorder != null) {
+			endRecord();
+			recorder.close();
+		}
+	}
+	
+	/**
+	 * Start recording the game on the board, if recording
+	 */
+	private void startRecord() {
+		if (recorder == null) return;
+		try {
+			recorder.startGame(board, true);
+			recording = true;
+		} catch (IOException e) {
+			stopRecording(e);
+		}
+	}
+	
+	/**
+	 * Finish recording the game on the board, if recording
+	 */
+	private void endRecord() {
+		if (recorder == null) return;
+		recording = false;
+		try {
+			recorder.endGame(board);
+		} catch (IOException e) {
+			stopRecording(e);
+		}
+	}
+	
+	/**
+	 * Stop recording after the file could not be written, without stopping the game
+	 * @param e
+	 */
+	private void stopRecording(IOException e) {
+		System.err.println("Could not record the game: "+e.getMessage());
+		try {
+			recorder.close();
+		} catch (IOException ignored) {
+		}
+		recorder = null;
+		recording = false;
+	}
+	
+	/**
+	 * Show the changes to the board right away. If the algorithm is deployed, it runs in
+	 * 		the background and its colours are shown once it is done, so the board never
+	 * 		waits for it. 
+	 */
 	private void updateBoard() {
+		view.updateStatus(this);
 		if (deployAlg)
-			board.updateStatus(this, alg);
-		else
-			board.updateStatus(this);
+			solver().solve(board, values -> view.showProbability(this, values));
+	}
+	
+	/**
+	 * Helper method to make the solver the first time it is needed, so a game where the
+	 * 		algorithm is never deployed does not make one. 
+	 * @return MinesweeperSolver of the game
+	 */
+	private MinesweeperSolver solver() {
+		if (solver == null) {
+			if (loaded != null)
+				solver = new MinesweeperSolver(loadedStart, loaded, Platform::runLater);
+			else
+				solver = new MinesweeperSolver(board, Platform::runLater);
+			loaded = null;
+			loadedStart = null;
+		}
+		return solver;
 	}
 	
 	/**
@@ -95,8 +201,8 @@ public final class Minesweeper extends Application {
 		//Initialize vb
 		vb.setStyle("-fx-alignment: center;-fx-spacing: 15;");
 		vb.setLayoutX(0);
-		vb.setLayoutY(90+30*ROWS);
-		vb.setMinSize(60+30*COLS, 0);
+		vb.setLayoutY(90+viewHeight());
+		vb.setMinSize(60+viewWidth(), 0);
 		
 		newGame.setOnAction(e -> {
 			showMenu();
@@ -109,7 +215,11 @@ public final class Minesweeper extends Application {
 		});
 		
 		restart.setOnAction(e -> {
-			board.restart();
+			endRecord();
+			IntList opened = board.restart();
+			startRecord();
+			if (recording)
+				recorder.opened(opened, board);
 			cheatsUsed = 0;
 			cheat.setVisible(true);
 			cheat.setText("Reveal a Square (3 left)");
@@ -124,10 +234,12 @@ public final class Minesweeper extends Application {
 			if (!solved) 
 				deployAlg = !deployAlg;
 			if (deployAlg) {
-				board.updateStatus(this, alg);
+				updateBoard();
 				hints.setText("Disable Algorithm");
 			} else {
-				board.updateStatus(this);
+				if (solver != null)
+					solver.cancel();
+				view.showProbability(this, null);
 				hints.setText("Enable Algorithm");
 			}
 		});
@@ -135,21 +247,37 @@ public final class Minesweeper extends Application {
 		cheat.setOnAction(e -> {
 			if (solved) return;
 			cheatsUsed++;
-			board.useCheat();
+			IntList opened = board.useCheat();
+			if (recording)
+				recorder.opened(opened, board);
 			cheat.setText("Reveal a Square ("+(3-cheatsUsed)+" left)");
 			if (cheatsUsed == 3)
 				cheat.setVisible(false);
 			updateBoard();
 		});
 		
+		save.setOnAction(e -> {
+			File file = fileChooser().showSaveDialog(stage);
+			if (file == null) return;
+			try {
+				if (solver != null || loaded != null)
+					solver().save(file.toPath(), board);
+				else
+					MinesweeperSave.save(file.toPath(), board, null);
+			} catch (IOException ex) {
+				System.err.println("Could not save the game: "+ex.getMessage());
+			}
+			updateBoard();
+		});
+		
 		hb = new HBox();
 		hb.setStyle("-fx-alignment: center;-fx-spacing: 15;");
 		hb.getChildren().addAll(newGame, restart);
-		hb.setMinSize(60+30*COLS, 30);
+		hb.setMinSize(60+viewWidth(), 30);
 		hb2 = new HBox();
 		hb2.setStyle("-fx-alignment: center;-fx-spacing: 15;");
-		hb2.getChildren().addAll(hints, cheat);
-		hb2.setMinSize(60+30*COLS, 30);
+		hb2.getChildren().addAll(hints, cheat, save);
+		hb2.setMinSize(60+viewWidth(), 30);
 		//Add the labels into the VBox vb
 		vb.getChildren().addAll(hb, hb2, uBad, uWin, creator);
 		
@@ -157,7 +285,8 @@ public final class Minesweeper extends Application {
 		pane.getChildren().add(vb);
 		
 		//Initialize scene
-		scene = new Scene(pane, 60+30*COLS, 300+30*ROWS);
+		scene = new Scene(pane, 60+viewWidth(), 300+viewHeight());
+		scene.getStylesheets().add(getClass().getResource(MinesweeperLabelView.STYLESHEET).toExternalForm());
 		initListener();
 		
 		//Ensure this method is never called again. 
@@ -171,58 +300,121 @@ public final class Minesweeper extends Application {
 		Button ez = new Button("Easy");
 		Button mi = new Button("Medium");
 		Button hd = new Button("Hard");
+		Button hg = new Button("Huge");
+		Button ld = new Button("Load");
+		CheckBox useCanvas = new CheckBox("Draw on Canvas");
 		ez.setOnAction(e -> {
 			int n = (int)(Math.random()*3)+8;
 			ROWS = n;
 			COLS = n;
 			MINES = 10;
-			showMenuHelper();
+			canvasView = useCanvas.isSelected();
+			showMenuHelper(null);
 		});
 		mi.setOnAction(e -> {
 			ROWS = 13+(int)(Math.random() * 4);
 			COLS = 15+(int)(Math.random() * 2);
 			MINES = 40;
-			showMenuHelper();
+			canvasView = useCanvas.isSelected();
+			showMenuHelper(null);
 		});
 		hd.setOnAction(e -> {
 			ROWS = 16;
 			COLS = 30;
 			MINES = 100;
-			showMenuHelper();
+			canvasView = useCanvas.isSelected();
+			showMenuHelper(null);
+		});
+		hg.setOnAction(e -> {
+			ROWS = 2000;
+			COLS = 2000;
+			MINES = 640000;
+			canvasView = true;
+			showMenuHelper(null);
+		});
+		ld.setOnAction(e -> {
+			File file = fileChooser().showOpenDialog(stage);
+			if (file == null) return;
+			MinesweeperSave loaded;
+			try {
+				loaded = MinesweeperSave.open(file.toPath());
+			} catch (IOException ex) {
+				System.err.println("Could not load the game: "+ex.getMessage());
+				return;
+			}
+			ROWS = loaded.getBoard().getRows();
+			COLS = loaded.getBoard().getCols();
+			MINES = loaded.getBoard().getMines();
+			canvasView = useCanvas.isSelected();
+			showMenuHelper(loaded);
 		});
-		vb.getChildren().addAll(chooseDifficulty, ez,mi,hd);
+		vb.getChildren().addAll(chooseDifficulty, ez,mi,hd,hg,ld,useCanvas);
 		vb.setStyle("-fx-alignment: center;-fx-spacing: 15;");
-		Scene scene2 = new Scene(vb, 300, 300);
+		Scene scene2 = new Scene(vb, 300, 350);
 		stage.setScene(scene2);
 		stage.setMinWidth(300);
-		stage.setMinHeight(300);
+		stage.setMinHeight(350);
 		stage.setMaxWidth(300);
-		stage.setMaxHeight(300);
+		stage.setMaxHeight(350);
 		//stage.setX((Toolkit.getDefaultToolkit().getScreenSize().getWidth()-stage.getMinWidth())/2);
 		//stage.setY((Toolkit.getDefaultToolkit().getScreenSize().getHeight()-stage.getMinHeight())/2);
 		stage.show();
 	}
 	
-	private void showMenuHelper() {
-		board = new MinesweeperBoard(ROWS,COLS,MINES);
+	/**
+	 * Start the game chosen in the menu
+	 * @param loaded, saved game, or null for a new board
+	 */
+	private void showMenuHelper(MinesweeperSave loaded) {
+		if (ROWS * COLS > MAX_LABELS)
+			canvasView = true;
 		currentPos = new int[] {ROWS,COLS};
 		if (firstCall) setupScene1();
-		startGame();
-		stage.setMinWidth(60+30*COLS);
-		stage.setMaxWidth(60+30*COLS);
-		stage.setMinHeight(250+30*ROWS);
-		stage.setMaxHeight(250+30*ROWS);
+		if (loaded != null)
+			startGame(loaded.getBoard(), loaded);
+		else
+			startGame(new MinesweeperBoard(ROWS, COLS, MINES), null);
+		stage.setMinWidth(60+viewWidth());
+		stage.setMaxWidth(60+viewWidth());
+		stage.setMinHeight(250+viewHeight());
+		stage.setMaxHeight(250+viewHeight());
 		//stage.setX((Toolkit.getDefaultToolkit().getScreenSize().getWidth()-stage.getMinWidth())/2);
 		//stage.setY((Toolkit.getDefaultToolkit().getScreenSize().getHeight()-stage.getMinHeight())/2);
-		this.vb.setMinSize(60+30*COLS, 0);
-		this.vb.setMaxSize(60+30*COLS, 200);
-		this.vb.setLayoutY(60+30*ROWS);
+		this.vb.setMinSize(60+viewWidth(), 0);
+		this.vb.setMaxSize(60+viewWidth(), 200);
+		this.vb.setLayoutY(60+viewHeight());
+	}
+	
+	/**
+	 * @return width in pixels of the view of the board
+	 */
+	private int viewWidth() {
+		return canvasView ? MinesweeperCanvasView.viewportWidth(COLS) : 30*COLS;
 	}
 	
 	/**
-	 * Reset the board and create new board. 
+	 * @return height in pixels of the view of the board
 	 */
-	private void startGame() {
+	private int viewHeight() {
+		return canvasView ? MinesweeperCanvasView.viewportHeight(ROWS) : 30*ROWS;
+	}
+	
+	/**
+	 * @return FileChooser for saved games
+	 */
+	private FileChooser fileChooser() {
+		FileChooser chooser = new FileChooser();
+		chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Saved games", "*.mss"));
+		return chooser;
+	}
+	
+	/**
+	 * Reset the board and start a game on a board. 
+	 * @param b, new board, or the board of a saved game
+	 * @param saved, saved game of b, which is not recorded and whose deductions the
+	 * 		algorithm starts from, or null for a new board
+	 */
+	private void startGame(MinesweeperBoard b, MinesweeperSave saved) {
 		
 		//Reset number of cheats used. 
 		cheatsUsed = 0;
@@ -230,14 +422,30 @@ public final class Minesweeper extends Application {
 		cheat.setText("Reveal a Square (3 left)");
 		
 		//Initialize the main aspects of the game
-		board = new MinesweeperBoard(ROWS, COLS, MINES);
+		endRecord();
+		board = b;
+		clicks = new MinesweeperMoves(board);
+		solved = board.isFinished();
+		if (saved == null)
+			startRecord();
+		if (canvasView)
+			view = new MinesweeperCanvasView(board);
+		else
+			view = new MinesweeperLabelView(board);
 		
-		//set up algorithm
-		alg = new MinesweeperAlg(this, board, ROWS, COLS);
+		//stop the algorithm of the last game, the one of this game is made when it is deployed
+		if (solver != null)
+			solver.cancel();
+		solver = null;
+		loaded = saved != null && saved.hasDeductions() ? saved : null;
+		loadedStart = loaded != null ? board.snapshot() : null;
 		
 		initPane();
 		
-		//update board
+		//reveal the first empty square and update board
+		IntList opened = board.revealBeginning();
+		if (recording)
+			recorder.opened(opened, board);
 		updateBoard();
 		
 		stage.setScene(scene);
@@ -245,12 +453,10 @@ public final class Minesweeper extends Application {
 	}
 	
 	/**
-	 * Add labels to the pane
+	 * Add the view of the board to the pane
 	 */
 	private void initPane() {
-		Label[][] lbls = board.getLabels();
-		for (int i=0;i<lbls.length;i++)
-			pane.getChildren().addAll(lbls[i]);
+		view.addTo(pane);
 	}
 	
 	/**
@@ -260,18 +466,41 @@ public final class Minesweeper extends Application {
 		
 		scene.setOnMouseClicked(e -> {
 			if (!solved) {
-				int x = (int)((e.getSceneX()-25)/30);
-				int y = (int)((e.getSceneY()-25)/30);
-				if (y >= ROWS || y < 0 || x >= COLS || x < 0) return;
-				if (e.getButton() == MouseButton.PRIMARY)
+				int[] cell = view.cellAt(e.getSceneX(), e.getSceneY());
+				if (cell == null) return;
+				int y = cell[0];
+				int x = cell[1];
+				clicks.clear();
+				if (e.getButton() == MouseButton.PRIMARY) {
 					currentPos = new int[] {y,x};
-				else if (e.getButton() == MouseButton.SECONDARY)
-					board.rightClick(y, x, this);
-				updateBoard();
+					clicks.reveal(y, x);
+				} else if (e.getButton() == MouseButton.SECONDARY) {
+					clicks.rightClick(y, x);
+				}
+				play(clicks);
 			}
 		});
 	}
 	
+	/**
+	 * Make a batch of moves on the board of the game, for example from a script or a bot.
+	 * 		The moves are recorded, and the board is shown and the algorithm is run once 
+	 * 		for the whole batch. Once the game is over no move is made, and the batch says
+	 * 		so. Must be called on the JavaFX thread. 
+	 * 
+	 * @param moves, batch of moves made for the board of the game
+	 * @return moves, holding the squares that changed and the state of the game
+	 */
+	public MinesweeperMoves play(MinesweeperMoves moves) {
+		board.play(moves);
+		if (moves.getApplied() == 0)
+			return moves;
+		if (recording)
+			recorder.played(moves);
+		updateBoard();
+		return moves;
+	}
+	
 	/**
 	 * Allows other classes with access of an instance of this class to get
 	 * 		user position
@@ -1,104 +1,329 @@
 
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
 
-public final class MinesweeperAlg {
+public final class MinesweeperAlg implements MinesweeperListener {
 	
 	//Game board size
 	private int ROWS;
 	private int COLS;
 	
-	//Instances of the game and the board in the game
-	private Minesweeper game;
+	//Board in the game
 	private MinesweeperBoard board;
 	
-	//Fields that have information about whether or not a square is safe 
-	private boolean[][] mineCertainty;
-	private boolean[][] cannotBeMine;
-	private int[][] outcomesWithMine;
-	private int[][] totalOutcomes;
+	//Squares near every square, shared with the board
+	private Neighbours near;
 	
-	//Contains positions that contain revealed numbers that are to be checked. 
-	private ArrayList<Integer> positionsToCheck = new ArrayList<Integer>();
+	//Fields that have information about whether or not a square is safe, at index row*COLS+column
+	private boolean[] mineCertainty;
+	private boolean[] cannotBeMine;
+	private int[] outcomesWithMine;
+	private int[] totalOutcomes;
 	
 	/**
-	 * Constructor
+	 * Worklist of revealed numbers that are to be checked, stored as row*COLS+column, and
+	 * 		whether each square is currently in it. A number is only put back in the list
+	 * 		when a square near it is solved, so the algorithm stops as soon as nothing can
+	 * 		change anymore. 
+	 */
+	private IntList positionsToCheck = new IntList();
+	private boolean[] queued;
+	
+	//Revealed numbers of the board, only used by checkAllNumbers()
+	private IntList revealed = new IntList();
+	
+	//Calculates exact probabilities, used by calculateProbability() if exact is true
+	private MinesweeperProbability probability;
+	private boolean exact = false;
+	
+	//Whether the last calculateProbability() gave the scaled estimate instead of exact probabilities
+	private boolean scaled = false;
+	
+	//Finds squares solved by overlapping numbers, used by update() if elimination is true
+	private MinesweeperElimination elimination;
+	private boolean eliminate = true;
+	private IntList foundMines = new IntList();
+	private IntList foundSafe = new IntList();
+	
+	//Says when update() and calculateProbability() have to stop early, read on every check
+	private BooleanSupplier cancelled = () -> false;
+	
+	/**
+	 * Constructor. Only needs the board, so the algorithm can be run without the game
+	 * 		or JavaFX. The algorithm listens to the board, so that it only has to look at
+	 * 		the squares that change after each move. 
 	 * 
-	 * @param sf, main game
 	 * @param bboard, game's board
-	 * @param r, number of rows
-	 * @param c, number of columns
 	 */
-	public MinesweeperAlg(Minesweeper sf, MinesweeperBoard bboard, int r, int c) {
-		game = sf;
-		ROWS = r;
-		COLS = c;
-		mineCertainty = new boolean[ROWS][COLS];
-		cannotBeMine = new boolean[ROWS][COLS];
-		outcomesWithMine = new int[ROWS][COLS];
-		totalOutcomes = new int[ROWS][COLS];
+	public MinesweeperAlg(MinesweeperBoard bboard) {
+		this(bboard, true);
+	}
+	
+	/**
+	 * Constructor, for an algorithm that is given what was found out about the board by
+	 * 		readDeductions() instead of looking through every number, so the squares of a
+	 * 		board loaded from a file are not all read. Only the numbers near squares that
+	 * 		change after it is made are looked at, so the deductions must have been written
+	 * 		after update() ran to the end. 
+	 * 
+	 * @param bboard
+	 * @param seed, whether to look through every number of the board
+	 */
+	MinesweeperAlg(MinesweeperBoard bboard, boolean seed) {
+		ROWS = bboard.getRows();
+		COLS = bboard.getCols();
+		mineCertainty = new boolean[ROWS*COLS];
+		cannotBeMine = new boolean[ROWS*COLS];
+		outcomesWithMine = new int[ROWS*COLS];
+		totalOutcomes = new int[ROWS*COLS];
+		queued = new boolean[ROWS*COLS];
 		board = bboard;
+		near = board.getNeighbours();
+		probability = new MinesweeperProbability(board);
+		elimination = new MinesweeperElimination(board);
+		if (seed)
+			checkAllNumbers();
+		board.addListener(this);
 	}
 	
 	/**
-	 * Called when user makes a move command. It will run the algorithm again from scratch. 
-	 * Note, the checkAllNumbers() and lookThroughNumbers() are to be called multiple times,
-	 * 		and the number 50 is arbitrary right now and can be changed. 
-	 * 		The number should be at least 10, and I recommend it to be at least 15 so that
-	 * 		more cases may be able to be solved. 
+	 * Called when user makes a move command. What the algorithm found out on earlier moves
+	 * 		is kept, since revealing squares can never make it wrong. The numbers near the
+	 * 		squares revealed since the last call are already in positionsToCheck, so 
+	 * 		lookThroughNumbers() only has to check those and whatever they lead to. 
+	 * 
+	 * When the rules on single numbers are stuck, MinesweeperElimination looks at all the 
+	 * 		numbers together, and whatever it finds is given back to lookThroughNumbers(). 
+	 * 		This is much cheaper than the exact probabilities, so it runs before them. 
 	 */
 	public void update() {
-		board.updateStatus(game);
-		mineCertainty = new boolean[ROWS][COLS];
-		outcomesWithMine = new int[ROWS][COLS];
-		totalOutcomes = new int[ROWS][COLS];
-		cannotBeMine = new boolean[ROWS][COLS];
-		for (int i=0;i<50;i++) {
-			checkAllNumbers();
-			lookThroughNumbers();
+		long start = MinesweeperMetrics.start();
+		int numbers = lookThroughNumbers();
+		int passes = 1;
+		while (eliminate && !isCancelled() && elimination.solve(mineCertainty, cannotBeMine, foundMines, foundSafe)) {
+			for (int k=0;k<foundMines.size();k++) {
+				int n = foundMines.get(k);
+				mineCertainty[n] = true;
+				checkNumbersNear(n);
+			}
+			for (int k=0;k<foundSafe.size();k++) {
+				int n = foundSafe.get(k);
+				cannotBeMine[n] = true;
+				checkNumbersNear(n);
+			}
+			foundMines.clear();
+			foundSafe.clear();
+			numbers += lookThroughNumbers();
+			passes++;
 		}
+		MinesweeperMetrics.updated(start, passes, numbers);
 	}
 	
 	/**
-	 * Look through the board to find all positions where a number is revealed, and 
-	 * 		add those numbers in positionsToCheck ArrayList in such a way that
-	 * 		it will be accessible later.
+	 * Look through the board to find all positions where a number is revealed next to at
+	 * 		least one non revealed square, and add those numbers to positionsToCheck. 
+	 * 		Only needed when the algorithm is created and when the board is reset. 
 	 */
 	private void checkAllNumbers() {
 		positionsToCheck.clear();
-		for (int i=0;i<ROWS;i++) 
-			for (int j=0;j<COLS;j++) 
-				if (board.isNumAndRevealed(i, j) && board.getNum(i, j) > 0) 
-					positionsToCheck.add(i*10000+j);
+		Arrays.fill(queued, false);
+		revealed.clear();
+		board.revealedNumbers(revealed);
+		for (int k=0;k<revealed.size();k++) {
+			int n = revealed.get(k);
+			if (unrevealedNearSelf(n) > 0) {
+				queued[n] = true;
+				positionsToCheck.add(n);
+				elimination.changed(n);
+			}
+		}
+	}
+	
+	/**
+	 * Called by the board when a square is revealed. The square is no longer one that the
+	 * 		algorithm has to solve, it may be a number to check, and the numbers near it 
+	 * 		now have one less non revealed square. 
+	 */
+	@Override
+	public void cellRevealed(int x, int y) {
+		int n = x*COLS+y;
+		cannotBeMine[n] = false;
+		checkNumber(n);
+		checkNumbersNear(n);
+	}
+	
+	/**
+	 * Called by the board when every square is hidden again. Everything the algorithm has
+	 * 		found out is forgotten, because the squares or even the mines may be different. 
+	 */
+	@Override
+	public void boardReset() {
+		Arrays.fill(mineCertainty, false);
+		Arrays.fill(cannotBeMine, false);
+		probability.clear();
+		checkAllNumbers();
+	}
+	
+	/**
+	 * Write what the algorithm has found out to a file saved by MinesweeperSave, as one bit
+	 * 		for every square, bit n%8 of byte n/8 for the square n = row*COLS+column. 
+	 * 
+	 * @param mines, where the squares known to be mines are written, at its position
+	 * @param safe, where the squares known to be safe are written, at its position
+	 */
+	void writeDeductions(ByteBuffer mines, ByteBuffer safe) {
+		for (int n=0;n<ROWS*COLS;n+=8) {
+			int m = 0;
+			int s = 0;
+			for (int k=0;k<8 && n+k<ROWS*COLS;k++) {
+				if (mineCertainty[n+k]) m |= 1 << k;
+				if (cannotBeMine[n+k]) s |= 1 << k;
+			}
+			mines.put((byte)m);
+			safe.put((byte)s);
+		}
+	}
+	
+	/**
+	 * Go on from what was found out about the board before it was saved, as written by 
+	 * 		writeDeductions(). The board must be the one that was saved with it. The numbers
+	 * 		are not looked through again, since update() had nothing left to check when 
+	 * 		they were written. 
+	 * 
+	 * @param mines, squares known to be mines, from its position
+	 * @param safe, squares known to be safe, from its position
+	 */
+	void readDeductions(ByteBuffer mines, ByteBuffer safe) {
+		for (int n=0;n<ROWS*COLS;n+=8) {
+			int m = mines.get();
+			int s = safe.get();
+			for (int k=0;k<8 && n+k<ROWS*COLS;k++) {
+				mineCertainty[n+k] = (m & 1 << k) != 0;
+				cannotBeMine[n+k] = (s & 1 << k) != 0;
+			}
+		}
+		probability.clear();
+	}
+	
+	/**
+	 * Choose whether calculateProbability() gives the exact probability of each square
+	 * 		containing a mine, as calculated by MinesweeperProbability, instead of the
+	 * 		estimate explained in calculateProbability(). 
+	 * 
+	 * @param b
+	 */
+	public void setExactProbability(boolean b) {
+		exact = b;
+	}
+
+	/**
+	 * Make update() and calculateProbability() stop as soon as they can once a condition
+	 * 		is true, which they do by throwing a CancellationException. The condition is 
+	 * 		checked again and again while they run, so it can be made true from any thread,
+	 * 		for example () -> generation != gen for a call that only matters while no newer
+	 * 		call has been made. What the algorithm has found out so far is kept, so update()
+	 * 		can go on from there later. Must be called on the thread that runs the algorithm.
+	 * 
+	 * @param c, condition to stop
+	 */
+	public void setCancelCheck(BooleanSupplier c) {
+		cancelled = c;
+		probability.setCancelCheck(c);
+	}
+	
+	/**
+	 * Helper method to check whether the algorithm has been cancelled
+	 * 
+	 * @return false
+	 * @throws CancellationException if it has been cancelled
+	 */
+	private boolean isCancelled() {
+		if (cancelled.getAsBoolean())
+			throw new CancellationException("Algorithm was cancelled");
+		return false;
 	}
 	
 	/**
-	 * For each position found by checkAllNumbers(), trivially solve some cases as explained
-	 * 		in the comments within this method. 
+	 * Choose whether update() also solves the numbers together with Gaussian elimination, 
+	 * 		on by default. 
+	 * 
+	 * @param b
+	 */
+	public void setElimination(boolean b) {
+		eliminate = b;
+	}
+	
+	/**
+	 * Choose whether the exact mode solves its components on several threads.
+	 *
+	 * @param b
 	 */
-	private void lookThroughNumbers() {
-		for (int nums : positionsToCheck) {
-			int x = nums/10000;
-			int y = nums%10000;
-			int num = board.getNum(x, y);
+	public void setParallelProbability(boolean b) {
+		probability.setParallel(b);
+	}
+
+	/**
+	 * Put a square in positionsToCheck if it is a revealed number that is not in it already,
+	 * 		and tell MinesweeperElimination that its equation changed. 
+	 * 
+	 * @param n, position stored as row*COLS+column
+	 */
+	private void checkNumber(int n) {
+		if (board.isNumAndRevealed(n) && board.getNum(n) > 0) {
+			elimination.changed(n);
+			if (!queued[n]) {
+				queued[n] = true;
+				positionsToCheck.add(n);
+			}
+		}
+	}
+	
+	/**
+	 * Put the revealed numbers near a square that has just been solved back in
+	 * 		positionsToCheck, because they may be solvable now. 
+	 * 
+	 * @param n, position stored as row*COLS+column
+	 */
+	private void checkNumbersNear(int n) {
+		for (int d : near.of(n))
+			checkNumber(n+d);
+	}
+	
+	/**
+	 * For each position in positionsToCheck, trivially solve some cases as explained
+	 * 		in the comments within this method. Squares solved this way put the numbers 
+	 * 		near them back in positionsToCheck, and this goes on until it is empty. 
+	 * 
+	 * @return number of numbers checked
+	 */
+	private int lookThroughNumbers() {
+		int checked = 0;
+		while (!positionsToCheck.isEmpty() && !isCancelled()) {
+			checked++;
+			int n = positionsToCheck.pop();
+			queued[n] = false;
+			int num = board.getNum(n);
 			
 			/**
 			 * If the number on the square is equal to the number of mines this algorithm
 			 * 		has determined is present, set all remaining squares near this number
 			 * 		to be a safe spot. 
 			 */
-			if (getMinesNearSelf(x, y) == num)
-				setCellsToNotMines(x, y);
+			if (getMinesNearSelf(n) == num)
+				setCellsToNotMines(n);
 			
-			int unrevealed = unrevealedNearSelf(x, y);
+			int unrevealed = unrevealedNearSelf(n);
 			
 			/**
 			 * If the number of the square is equal to the number of non revealed squares
 			 * 		near it, all the squares near the square with the number must be a mine. 
 			 */
 			if (num == unrevealed) 
-				setCellsToMines(x, y);
+				setCellsToMines(n);
 			
-			int effectiveUnrevealed = effectiveUnrevealedNearSelf(x, y);
+			int effectiveUnrevealed = effectiveUnrevealedNearSelf(n);
 			
 			/**
 			 * If the number on the square is equal to the number of non revealed AND non mine
@@ -106,44 +331,37 @@ public final class MinesweeperAlg {
 			 * 		near it are mines. 
 			 */
 			if (num == effectiveUnrevealed)
-				setCellsToMines(x, y);
+				setCellsToMines(n);
 		}
+		return checked;
 	}
 	
 	/**
-	 * Determines the amount of non revealed squares near the position (x, y), excluding squares
+	 * Determines the amount of non revealed squares near the position n, excluding squares
 	 * 		near it that are deemed "cannot be mine."
 	 * 
-	 * @param x, row index
-	 * @param y, column index
+	 * @param n, position stored as row*COLS+column
 	 * @return number determined
 	 */
-	private int effectiveUnrevealedNearSelf(int x, int y) {
+	private int effectiveUnrevealedNearSelf(int n) {
 		int counter = 0;
-		for (int i = x-1; i <= x+1; i++) {
-			if (i < 0 || i > ROWS-1) continue;
-			for (int j = y-1; j <= y+1; j++) {
-				if (j < 0 || j > COLS-1 || i == x && j == y) continue;
-				if (board.isUnrevealed(i, j) && !cannotBeMine[i][j]) counter++;
-			}
-		}
+		for (int d : near.of(n))
+			if (board.isUnrevealed(n+d) && !cannotBeMine[n+d]) counter++;
 		return counter;
 	}
 	
 	/**
-	 * Change all the non revealed squares near the position (x, y) that are also not 
+	 * Change all the non revealed squares near the position n that are also not 
 	 * 		guaranteed to be mines to be all safe squares.
 	 * 
-	 * @param x, row index
-	 * @param y, column index
+	 * @param n, position stored as row*COLS+column
 	 */
-	private void setCellsToNotMines(int x, int y) {
-		for (int i = x-1; i <= x+1; i++) {
-			if (i < 0 || i > ROWS-1) continue;
-			for (int j = y-1; j <= y+1; j++) {
-				if (j < 0 || j > COLS-1 || i == x && j == y) continue;
-				if (board.isUnrevealed(i, j) && !mineCertainty[i][j])
-					cannotBeMine[i][j] = true;
+	private void setCellsToNotMines(int n) {
+		for (int d : near.of(n)) {
+			int m = n+d;
+			if (board.isUnrevealed(m) && !mineCertainty[m] && !cannotBeMine[m]) {
+				cannotBeMine[m] = true;
+				checkNumbersNear(m);
 			}
 		}
 	}
@@ -152,77 +370,67 @@ public final class MinesweeperAlg {
 	 * Determines amount of mines near a position. This value is determined by the algorithm
 	 * 		itself after calling "setCellsToMines()" on some squares that are trivially solved.
 	 * 
-	 * @param x, row index
-	 * @param y, column index
+	 * @param n, position stored as row*COLS+column
 	 * @return number determined
 	 */
-	private int getMinesNearSelf(int x, int y) {
+	private int getMinesNearSelf(int n) {
 		int counter = 0;
-		for (int i = x-1; i <= x+1; i++) {
-			if (i < 0 || i > ROWS-1) continue;
-			for (int j = y-1; j <= y+1; j++) {
-				if (j < 0 || j > COLS-1 || i == x && j == y) continue;
-				if (mineCertainty[i][j]) counter++;
-			}
-		}
+		for (int d : near.of(n))
+			if (mineCertainty[n+d]) counter++;
 		return counter;
 	}
 	
 	/**
-	 * Change all the non revealed squares near the position (x, y) that are not safe zones
+	 * Change all the non revealed squares near the position n that are not safe zones
 	 * 		to be all mine squares.
 	 * 
-	 * @param x, row index
-	 * @param y, column index
+	 * @param n, position stored as row*COLS+column
 	 */
-	private void setCellsToMines(int x, int y) {
-		for (int i = x-1; i <= x+1; i++) {
-			if (i < 0 || i > ROWS-1) continue;
-			for (int j = y-1; j <= y+1; j++) {
-				if (j < 0 || j > COLS-1 || i == x && j == y) continue;
-				if (board.isUnrevealed(i, j) && !cannotBeMine[i][j])
-					mineCertainty[i][j] = true;
+	private void setCellsToMines(int n) {
+		for (int d : near.of(n)) {
+			int m = n+d;
+			if (board.isUnrevealed(m) && !cannotBeMine[m] && !mineCertainty[m]) {
+				mineCertainty[m] = true;
+				checkNumbersNear(m);
 			}
 		}
 	}
 	
 	/**
-	 * Determines number of squares near this position (x, y) that are not revealed.
+	 * Determines number of squares near this position n that are not revealed.
 	 * 
-	 * @param x, row index
-	 * @param y, column index
+	 * @param n, position stored as row*COLS+column
 	 * @return number determined
 	 */
-	private int unrevealedNearSelf(int x, int y) {
+	private int unrevealedNearSelf(int n) {
 		int counter = 0;
-		for (int i = x-1; i <= x+1; i++) {
-			if (i < 0 || i > ROWS-1) continue;
-			for (int j = y-1; j <= y+1; j++) {
-				if (j < 0 || j > COLS-1 || i == x && j == y) continue;
-				if (board.isUnrevealed(i, j)) counter++;
-			}
-		}
+		for (int d : near.of(n))
+			if (board.isUnrevealed(n+d)) counter++;
 		return counter;
 	}
 	
 	/**
-	 * Determines position of all non revealed squares near this square. Used by the calculate
-	 * 		probability method to give probability to each square. 
+	 * @return true if the last calculateProbability() gave the estimate explained in it,
+	 * 		which is scaled for the colours of the view, instead of exact probabilities
+	 */
+	public boolean isScaled() {
+		return scaled;
+	}
+	
+	/**
+	 * Get the estimate of calculateProbability() for a square before it is scaled for the
+	 * 		colours, which is on the same scale as a probability. Only meaningful if 
+	 * 		isScaled() is true. 
 	 * 
 	 * @param x, row index
 	 * @param y, column index
-	 * @return ArrayList of positions stored as an integer. 
+	 * @return estimate of the square containing a mine, -1 if there is no data for it
 	 */
-	private ArrayList<Integer> unrevealedNearSelfArrList(int x, int y) {
-		ArrayList<Integer> nums = new ArrayList<Integer>();
-		for (int i = x-1; i <= x+1; i++) {
-			if (i < 0 || i > ROWS-1) continue;
-			for (int j = y-1; j <= y+1; j++) {
-				if (j < 0 || j > COLS-1 || i == x && j == y) continue;
-				if (board.isUnrevealed(i, j)) nums.add(i*10000+j);
-			}
-		}
-		return nums;
+	public double getEstimate(int x, int y) {
+		int n = x*COLS+y;
+		if (totalOutcomes[n] == 0)
+			return -1;
+		return ((double)outcomesWithMine[n])/totalOutcomes[n];
 	}
 	
 	/**
@@ -238,17 +446,32 @@ public final class MinesweeperAlg {
 	 * This method itself will contain many explanations on what each part of the code does and
 	 * 		how the probability is correct. 
 	 * 
+	 * If the exact mode is on, the exact probabilities from MinesweeperProbability are 
+	 * 		returned instead, unless the frontier is too big for it to solve. 
+	 * 
 	 * @return double[][], individual probability of containing a mine for each square. 
 	 */
 	public double[][] calculateProbability() {
+		long start = MinesweeperMetrics.start();
+		isCancelled();
+		if (exact) {
+			double[][] values = probability.solve(mineCertainty, cannotBeMine);
+			isCancelled();
+			if (values != null) {
+				scaled = false;
+				MinesweeperMetrics.calculated(start);
+				return values;
+			}
+		}
+		scaled = true;
 		
 		/**
 		 * This part of the code determines information for non trivial squares. 
 		 * 
 		 * For each square, first determine if it is a revealed number. If not, check the next 
 		 * 		square. 
-		 * If it is a revealed number, retrieve an ArrayList of all the non revealed squares'
-		 * 		position near it. 
+		 * If it is a revealed number, go through the non revealed squares near it with the
+		 * 		neighbour table, which allocates nothing. 
 		 * For each of non revealed squares, if they are NOT trivially solved, do the following:
 		 * 		for that square, add the value of the revealed number near it to the outcomesWithMine,
 		 * 		then add the number of non revealed squares near that revealed number to totalOutcomes. 
@@ -285,15 +508,17 @@ public final class MinesweeperAlg {
 		 * 		Important note: this final probability for S is 0.6, and NOT the average of 0.5 and 0.6667. 
 		 * 	
 		 */
-		for (int i=0;i<ROWS;i++) {
-			for (int j=0;j<COLS;j++) {
-				if (board.isNumAndRevealed(i, j)) {
-					ArrayList<Integer> nums = unrevealedNearSelfArrList(i, j);
-					for (int n : nums) {
-						if (!mineCertainty[n/10000][n%10000] && !cannotBeMine[n/10000][n%10000]) {
-							outcomesWithMine[n/10000][n%10000] += board.getNum(i, j);
-							totalOutcomes[n/10000][n%10000] += nums.size();
-						}
+		Arrays.fill(outcomesWithMine, 0);
+		Arrays.fill(totalOutcomes, 0);
+		for (int n=0;n<ROWS*COLS;n++) {
+			if (board.isNumAndRevealed(n)) {
+				int num = board.getNum(n);
+				int unrevealed = unrevealedNearSelf(n);
+				for (int d : near.of(n)) {
+					int m = n+d;
+					if (board.isUnrevealed(m) && !mineCertainty[m] && !cannotBeMine[m]) {
+						outcomesWithMine[m] += num;
+						totalOutcomes[m] += unrevealed;
 					}
 				}
 			}
@@ -305,20 +530,16 @@ public final class MinesweeperAlg {
 		 * Determine smallest and largest probability of containing mine that is not the trivial case. 
 		 */
 		double minVal = 5;
-		for (int i=0;i<ROWS;i++) {
-			for (int j=0;j<COLS;j++) {
-				if (mineCertainty[i][j] || totalOutcomes[i][j] == 0) continue;
-				else
-					minVal = Math.min(minVal, ((double)outcomesWithMine[i][j])/totalOutcomes[i][j]);
-			}
+		for (int n=0;n<ROWS*COLS;n++) {
+			if (mineCertainty[n] || totalOutcomes[n] == 0) continue;
+			else
+				minVal = Math.min(minVal, ((double)outcomesWithMine[n])/totalOutcomes[n]);
 		}
 		double maxVal = 0;
-		for (int i=0;i<ROWS;i++) {
-			for (int j=0;j<COLS;j++) {
-				if (cannotBeMine[i][j] || totalOutcomes[i][j] == 0) continue;
-				else
-					maxVal = Math.max(maxVal, ((double)outcomesWithMine[i][j])/totalOutcomes[i][j]);
-			}
+		for (int n=0;n<ROWS*COLS;n++) {
+			if (cannotBeMine[n] || totalOutcomes[n] == 0) continue;
+			else
+				maxVal = Math.max(maxVal, ((double)outcomesWithMine[n])/totalOutcomes[n]);
 		}
 		
 		/**
@@ -348,17 +569,19 @@ public final class MinesweeperAlg {
 		 */
 		for (int i=0;i<ROWS;i++) {
 			for (int j=0;j<COLS;j++) {
-				if (mineCertainty[i][j])
+				int n = i*COLS+j;
+				if (mineCertainty[n])
 					values[i][j] = 1;
-				else if (cannotBeMine[i][j])
+				else if (cannotBeMine[n])
 					values[i][j] = 0;
-				else if (totalOutcomes[i][j] == 0)
+				else if (totalOutcomes[n] == 0)
 					values[i][j] = -1;
 				else
-					values[i][j] = (((double)outcomesWithMine[i][j])/totalOutcomes[i][j]-minVal+0.05)*(1/(1-minVal+0.08))/constant;
+					values[i][j] = (((double)outcomesWithMine[n])/totalOutcomes[n]-minVal+0.05)*(1/(1-minVal+0.08))/constant;
 
 			}
 		}
+		MinesweeperMetrics.calculated(start);
 		return values;
 	}
 }
\ No newline at end of file
@@ -1,47 +1,437 @@
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
-
-import javafx.geometry.Pos;
-import javafx.scene.control.Label;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import java.util.function.LongFunction;
+import java.util.random.RandomGenerator;
 
 /**
- * Class containing positions of mines
- * 
+ * Class containing positions of mines and the state of the game.
+ *
+ * This class does not depend on JavaFX, so it can be used without starting the toolkit,
+ * 		for example by the algorithm in batch runs. Views register a MinesweeperListener
+ * 		to be told when squares are revealed or marked and when the game is finished.
+ *
  * @author Haoxian (Roger) Hu
  */
 public final class MinesweeperBoard {
-	
+
 	//Information on the board itself
 	private int ROWS;
 	private int COLS;
 	private int MINES;
-	
+
 	private boolean revealedBeginning = false;
-	
-	//Whether a certain square has been revealed
-	private boolean[][] revealed;
-		
-	//Whether a certain square has a mine
-	private boolean[][] mines;
-		
-	//The numbers on the squares if it is to be revealed
-	private int[][] labels;
-		
-	//The actual labels containing numbers or X or E
-	private Label[][] lbls;
-	
-	//Positions that are marked mines by the user. 
-	private boolean[][] markedMines;
-	
-	/**
-	 * Allows the main class to get access to all the labels this class contains. 
-	 * @return Label[][]
-	 */
-	public Label[][] getLabels() {
-		return lbls;
-	}
-	
+
+	//Whether mines are placed with addMinesSpread() instead of addMines()
+	private boolean spreadMines = false;
+
+	/**
+	 * Every square is packed into one byte, at index row*COLS+column. The lowest 4 bits
+	 * 		hold the number of mines near the square (0-8), which is kept for mines too, and
+	 * 		the other bits say whether the square has a mine, is revealed, or is marked as
+	 * 		a mine by the user. This is one byte per square instead of the 7 bytes and a
+	 * 		header for every row that four separate 2D arrays would take, so boards with
+	 * 		100 million squares still fit.
+	 *
+	 * The bytes are split into chunks of CHUNK squares, so that snapshots can share the
+	 * 		chunks with the board. A chunk that is shared is copied the first time the board
+	 * 		changes it (copy on write), so a snapshot never changes and taking one does not
+	 * 		copy any squares.
+	 */
+	private byte[][] chunks;
+	private int size;
+
+	//Whether the board may change each chunk without copying it, false if a snapshot may have it
+	private boolean[] owned;
+
+	/**
+	 * Squares of a board loaded with MinesweeperSave, stored the same way as the chunks one
+	 * 		after another, usually a mapping of the file. A chunk that is null has not been
+	 * 		read yet and is read from here the first time a square in it is needed, so only
+	 * 		the parts of a huge board that are looked at are ever read from the disk. Null
+	 * 		if the board did not come from a file.
+	 */
+	private ByteBuffer source;
+
+	//Last snapshot taken, and whether the board has changed since
+	private MinesweeperSnapshot snapshot;
+	private boolean changed = true;
+
+	//Squares near every square
+	private Neighbours near;
+
+	//Number of squares in a chunk is 1 << CHUNK_SHIFT
+	static final int CHUNK_SHIFT = 12;
+	static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+	//Masks for the bits of a square
+	static final int NUM = 0x0F;
+	static final int MINE = 0x10;
+	static final int REVEALED = 0x20;
+	static final int MARKED = 0x40;
+
+	/**
+	 * Reads 8 squares of a chunk at once as a long, the first square being the lowest
+	 * 		byte. A bit of a square times LANES is that bit in all 8 bytes, so the scans over
+	 * 		the whole board test 8 squares with a few operations on one long.
+	 */
+	private static final VarHandle WORD = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final long LANES = 0x0101010101010101L;
+
+	//Whether the game is over, and if so, whether the user won
+	private boolean finished = false;
+	private boolean won = false;
+
+	/**
+	 * Counts that decide whether the game is won: safe squares that are still hidden, mines
+	 * 		that are marked, and safe squares that are marked. Every move keeps them up to
+	 * 		date as it changes squares, so checkWon() takes the same time for every size of
+	 * 		board instead of looking at every square. hiddenSafe is -1 while the counts are
+	 * 		not known, for example for a board loaded from a file, and checkWon() counts
+	 * 		them once the first time it needs them.
+	 */
+	private int hiddenSafe = -1;
+	private int markedMines;
+	private int wrongMarks;
+
+	//Positions revealed by the current move, and the blanks the flood fill still has to look at
+	private IntList opened = new IntList();
+	private IntList fill = new IntList();
+
+	//Classes that are told about changes to the board, such as the view
+	private ArrayList<MinesweeperListener> listeners = new ArrayList<MinesweeperListener>();
+
+	/**
+	 * Seed of the current board, and the random number generator made from it. The
+	 * 		generator is used for placing mines, the first reveal and cheats, so a game
+	 * 		is fully determined by the seed, the size of the board and the moves made.
+	 * 		Each board has its own generator, so boards on different threads never share
+	 * 		one.
+	 */
+	private long seed;
+	private LongFunction<RandomGenerator> generators;
+	private RandomGenerator rng;
+
+	/**
+	 * Constructor, using a random seed
+	 */
+	public MinesweeperBoard(int r, int c, int s) {
+		this(r, c, s, new SplittableRandom().nextLong());
+	}
+
+	/**
+	 * Constructor, using a SplittableRandom made from the seed
+	 */
+	public MinesweeperBoard(int r, int c, int s, long sd) {
+		this(r, c, s, sd, SplittableRandom::new);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param r, number of rows
+	 * @param c, number of columns
+	 * @param s, number of mines
+	 * @param sd, seed of the board
+	 * @param gen, makes a random number generator from a seed, for example SplittableRandom::new
+	 * 		or a seed -> RandomGeneratorFactory.of("L64X128MixRandom").create(seed)
+	 */
+	public MinesweeperBoard(int r, int c, int s, long sd, LongFunction<RandomGenerator> gen) {
+		ROWS = r;
+		COLS = c;
+		MINES = s;
+		if ((long)r * c > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Board of "+r+"x"+c+" is too large!");
+		size = r * c;
+		chunks = new byte[(size + CHUNK_MASK) >>> CHUNK_SHIFT][];
+		owned = new boolean[chunks.length];
+		for (int k=0;k<chunks.length;k++) {
+			chunks[k] = new byte[Math.min(CHUNK_MASK + 1, size - (k << CHUNK_SHIFT))];
+			owned[k] = true;
+		}
+		near = new Neighbours(r, c);
+		seed = sd;
+		generators = gen;
+		init();
+	}
+
+	/**
+	 * Constructor, only called by MinesweeperSave, making a board whose squares are read
+	 * 		from a buffer as they are needed.
+	 *
+	 * @param r, number of rows
+	 * @param c, number of columns
+	 * @param s, number of mines
+	 * @param sd, seed of the board
+	 * @param cells, squares of the board, in the same format as the chunks
+	 * @param rb, whether revealBeginning() has been used
+	 * @param f, whether the game is finished
+	 * @param w, whether the game was won
+	 */
+	MinesweeperBoard(int r, int c, int s, long sd, ByteBuffer cells, boolean rb, boolean f, boolean w) {
+		ROWS = r;
+		COLS = c;
+		MINES = s;
+		size = r * c;
+		chunks = new byte[(size + CHUNK_MASK) >>> CHUNK_SHIFT][];
+		owned = new boolean[chunks.length];
+		source = cells;
+		near = new Neighbours(r, c);
+		seed = sd;
+		generators = SplittableRandom::new;
+		rng = generators.apply(seed);
+		revealedBeginning = rb;
+		finished = f;
+		won = w;
+	}
+
+	/**
+	 * Constructor, making a board that starts out the same as a snapshot, without any
+	 * 		listeners. The board shares the squares of the snapshot until it changes them.
+	 *
+	 * @param snap, snapshot to start from
+	 */
+	public MinesweeperBoard(MinesweeperSnapshot snap) {
+		ROWS = snap.getRows();
+		COLS = snap.getCols();
+		MINES = snap.getMines();
+		size = ROWS * COLS;
+		chunks = snap.chunks.clone();
+		owned = new boolean[chunks.length];
+		source = snap.source;
+		near = snap.getNeighbours();
+		seed = snap.getSeed();
+		generators = snap.generators;
+		rng = generators.apply(seed);
+		revealedBeginning = snap.revealedBeginning;
+		finished = snap.isFinished();
+		won = snap.isWon();
+		hiddenSafe = snap.hiddenSafe;
+		markedMines = snap.markedMines;
+		wrongMarks = snap.wrongMarks;
+	}
+
+	/**
+	 * Take a snapshot of the board as it is now. The snapshot never changes, so any number
+	 * 		of threads can read it without locks while the board goes on changing. Squares
+	 * 		are shared with the board until the board changes them, so this only copies one
+	 * 		reference for every CHUNK squares, and nothing at all if the board has not changed
+	 * 		since the last snapshot.
+	 *
+	 * @return MinesweeperSnapshot
+	 */
+	public MinesweeperSnapshot snapshot() {
+		assert changed || sharesChunks() : "Board changed without a new snapshot!";
+		if (changed) {
+			Arrays.fill(owned, false);
+			snapshot = new MinesweeperSnapshot(ROWS, COLS, MINES, chunks.clone(), source, near, seed, generators,
+					revealedBeginning, finished, won, hiddenSafe, markedMines, wrongMarks);
+			changed = false;
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Helper method for the assertion in snapshot(), checking that every chunk of the board
+	 * 		is the chunk of the last snapshot, which is what makes it safe to give it out again
+	 * @return boolean
+	 */
+	private boolean sharesChunks() {
+		for (int k=0;k<chunks.length;k++)
+			if (chunks[k] != snapshot.chunks[k])
+				return false;
+		return true;
+	}
+
+	/**
+	 * Copy the board as it is now, without its listeners. The copy shares nothing that
+	 * 		changes with this board, so it can be handed to another thread.
+	 *
+	 * @return MinesweeperBoard
+	 */
+	public MinesweeperBoard copy() {
+		return new MinesweeperBoard(snapshot());
+	}
+
+	/**
+	 * Make this board the same as a snapshot of a board of the same size, telling the
+	 * 		listeners about every square that was revealed or marked since. If a square was
+	 * 		hidden again or the mines are different, the listeners are told the board was
+	 * 		reset instead. Used to keep a board on another thread up to date with snapshots
+	 * 		of the board of the game, so that its listeners only have to look at what changed.
+	 *
+	 * Chunks that this board already shares with the snapshot are skipped, so when this
+	 * 		board is only ever changed by this method, it takes time for the chunks that
+	 * 		changed and not for the whole board.
+	 *
+	 * @param snap, snapshot to copy from
+	 */
+	public void copyFrom(MinesweeperSnapshot snap) {
+		if (snap.getRows() != ROWS || snap.getCols() != COLS)
+			throw new IllegalArgumentException("Cannot copy a "+snap.getRows()+"x"+snap.getCols()+" board into a "+ROWS+"x"+COLS+" board!");
+		opened.clear();
+		boolean reset = false;
+		for (int k=0;k<chunks.length && !reset;k++) {
+			byte[] mine = chunks[k];
+			byte[] theirs = snap.chunks[k];
+			if (mine == theirs && (mine != null || source == snap.source))
+				continue;
+			if (mine == null)
+				mine = load(k);
+			if (theirs == null)
+				theirs = snap.chunk(k);
+			for (int i=0;i<mine.length;i++) {
+				int diff = mine[i] ^ theirs[i];
+				if (diff == 0)
+					continue;
+				if ((diff & MINE) != 0 || (diff & REVEALED) != 0 && (mine[i] & REVEALED) != 0) {
+					reset = true;
+					break;
+				}
+				opened.add((k << CHUNK_SHIFT) + i);
+			}
+		}
+		System.arraycopy(snap.chunks, 0, chunks, 0, chunks.length);
+		Arrays.fill(owned, false);
+		source = snap.source;
+		changed = true;
+		MINES = snap.getMines();
+		seed = snap.getSeed();
+		revealedBeginning = snap.revealedBeginning;
+		finished = snap.isFinished();
+		won = snap.isWon();
+		hiddenSafe = snap.hiddenSafe;
+		markedMines = snap.markedMines;
+		wrongMarks = snap.wrongMarks;
+		if (reset) {
+			opened.clear();
+			for (MinesweeperListener l : listeners)
+				l.boardReset();
+			return;
+		}
+
+		//Every square is copied before the listeners are told, so they see the whole new board
+		for (int k=0;k<opened.size();k++) {
+			int n = opened.get(k);
+			for (MinesweeperListener l : listeners) {
+				if ((cell(n) & REVEALED) != 0)
+					l.cellRevealed(n / COLS, n % COLS);
+				else
+					l.cellMarked(n / COLS, n % COLS, (cell(n) & MARKED) != 0);
+			}
+		}
+		opened.clear();
+	}
+
+	/**
+	 * Helper method to read the byte of a square
+	 * @param n, position stored as row*COLS+column
+	 * @return int
+	 */
+	private int cell(int n) {
+		byte[] chunk = chunks[n >>> CHUNK_SHIFT];
+		if (chunk == null)
+			chunk = load(n >>> CHUNK_SHIFT);
+		return chunk[n & CHUNK_MASK];
+	}
+
+	/**
+	 * Helper method to change the byte of a square, copying its chunk first if a snapshot
+	 * 		may share it
+	 * @param n, position stored as row*COLS+column
+	 * @param value
+	 */
+	private void setCell(int n, int value) {
+		int k = n >>> CHUNK_SHIFT;
+		if (!owned[k])
+			own(k);
+		chunks[k][n & CHUNK_MASK] = (byte)value;
+	}
+
+	/**
+	 * Helper method to copy a chunk that a snapshot may share, so the board can change it
+	 * @param k, index of the chunk
+	 */
+	private void own(int k) {
+		chunks[k] = chunks[k] != null ? chunks[k].clone() : read(k);
+		owned[k] = true;
+		changed = true;
+	}
+
+	/**
+	 * Helper method to read a chunk that has not been read from the source yet. The chunk
+	 * 		is a new array, so the board owns it and changes it in place, but the last
+	 * 		snapshot still has null for it, so the board counts as changed.
+	 * @param k, index of the chunk
+	 * @return byte[] of the chunk
+	 */
+	private byte[] load(int k) {
+		chunks[k] = read(k);
+		owned[k] = true;
+		changed = true;
+		return chunks[k];
+	}
+
+	/**
+	 * Helper method to copy a chunk out of the source
+	 * @param k, index of the chunk
+	 * @return byte[]
+	 */
+	private byte[] read(int k) {
+		byte[] chunk = new byte[Math.min(CHUNK_MASK + 1, size - (k << CHUNK_SHIFT))];
+		source.get(k << CHUNK_SHIFT, chunk);
+		return chunk;
+	}
+
+	/**
+	 * Register a class that wants to be told about changes to the board
+	 * @param l
+	 */
+	public void addListener(MinesweeperListener l) {
+		listeners.add(l);
+	}
+
+	/**
+	 * Stop telling a class about changes to the board
+	 * @param l
+	 */
+	public void removeListener(MinesweeperListener l) {
+		listeners.remove(l);
+	}
+
+	public int getRows() {
+		return ROWS;
+	}
+
+	public int getCols() {
+		return COLS;
+	}
+
+	public int getMines() {
+		return MINES;
+	}
+
+	/**
+	 * @return table of the squares near every square, shared with the algorithm
+	 */
+	public Neighbours getNeighbours() {
+		return near;
+	}
+
+	/**
+	 * @return seed of the current board, which together with the size of the board and
+	 * 		the number of mines is enough to make the same board again
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
 	/**
 	 * Allows the algorithm class to check whether a square is revealed. If so, return
 	 * 		true (because a mine will never be revealed anyway)
@@ -50,449 +440,863 @@ public final class MinesweeperBoard {
 	 * @return boolean, true if square revealed, false otherwise
 	 */
 	public boolean isNumAndRevealed(int x, int y) {
-		return labels[x][y] >= 0 && revealed[x][y];
+		return isNumAndRevealed(x*COLS+y);
 	}
-	
+
 	/**
-	 * Allows the algorithm class to check whether a square is hidden from user. 
+	 * Same as isNumAndRevealed(x, y)
+	 * @param n, position stored as row*COLS+column
+	 * @return boolean
+	 */
+	public boolean isNumAndRevealed(int n) {
+		return (cell(n) & (MINE | REVEALED)) == REVEALED;
+	}
+
+	/**
+	 * Add the position of every revealed number that is not 0 to a list, from the first
+	 * 		square to the last. Squares are read 8 at a time, and 8 hidden squares are
+	 * 		skipped with one test, so on a board that is mostly hidden this goes about as
+	 * 		fast as the memory can be read.
+	 * @param out, list to add the positions to
+	 */
+	public void revealedNumbers(IntList out) {
+		for (int k=0;k<chunks.length;k++) {
+			byte[] chunk = chunks[k] != null ? chunks[k] : load(k);
+			int base = k << CHUNK_SHIFT;
+			int i = 0;
+			for (;i+8<=chunk.length;i+=8) {
+				if (((long)WORD.get(chunk, i) & LANES * REVEALED) == 0)
+					continue;
+				for (int j=i;j<i+8;j++)
+					if ((chunk[j] & (MINE | REVEALED)) == REVEALED && (chunk[j] & NUM) != 0)
+						out.add(base + j);
+			}
+			for (;i<chunk.length;i++)
+				if ((chunk[i] & (MINE | REVEALED)) == REVEALED && (chunk[i] & NUM) != 0)
+					out.add(base + i);
+		}
+	}
+
+	/**
+	 * Allows the algorithm class to check whether a square is hidden from user.
 	 * 		Returns true if so, false otherwise
 	 * @param x, row index
 	 * @param y, column index
 	 * @return boolean as stated above
 	 */
 	public boolean isUnrevealed(int x, int y) {
-		return !revealed[x][y];
+		return isUnrevealed(x*COLS+y);
+	}
+
+	/**
+	 * Same as isUnrevealed(x, y)
+	 * @param n, position stored as row*COLS+column
+	 * @return boolean
+	 */
+	public boolean isUnrevealed(int n) {
+		return (cell(n) & REVEALED) == 0;
 	}
-	
+
 	/**
 	 * Allows the algorithm class to get the value of a square that it has already
-	 * 		checked that it is revealed. 
+	 * 		checked that it is revealed.
 	 * @param x, row index
 	 * @param y, column index
 	 * @return value of a square
 	 */
 	public int getNum(int x, int y) {
-		if (revealed[x][y]) 
-			return labels[x][y];
+		return getNum(x*COLS+y);
+	}
+
+	/**
+	 * Same as getNum(x, y)
+	 * @param n, position stored as row*COLS+column
+	 * @return value of a square
+	 */
+	public int getNum(int n) {
+		int cell = cell(n);
+		if ((cell & REVEALED) != 0)
+			return (cell & MINE) != 0 ? -1 : cell & NUM;
 		else
 			throw new RuntimeException("Illegal attempt to get number!");
 	}
-	
+
 	/**
-	 * Constructor
+	 * Allows the view to check whether a square is marked as a mine by the user.
+	 * @param x, row index
+	 * @param y, column index
+	 * @return boolean, true if marked
 	 */
-	public MinesweeperBoard(int r, int c, int s) {
-		ROWS = r;
-		COLS = c;
-		MINES = s;
-		revealed = new boolean[r][c];
-		mines = new boolean[r][c];
-		labels = new int[r][c];
-		lbls = new Label[r][c];
-		markedMines = new boolean[r][c];
-		init();
+	public boolean isMarked(int x, int y) {
+		return (cell(x*COLS+y) & MARKED) != 0;
+	}
+
+	/**
+	 * Allows the view to get the value of a square whether or not it is revealed, so that
+	 * 		it can set up its text ahead of time. Should NOT be used by the algorithm.
+	 * @param x, row index
+	 * @param y, column index
+	 * @return value of a square, -1 if the square is a mine
+	 */
+	public int getValue(int x, int y) {
+		int cell = cell(x*COLS+y);
+		return (cell & MINE) != 0 ? -1 : cell & NUM;
+	}
+
+	/**
+	 * @return true if the user has either won or stepped on a mine
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * @return true if the game is finished and the user won
+	 */
+	public boolean isWon() {
+		return won;
 	}
-	
+
 	/**
-	 * Initialize fields and mine locations and reveal bottom row
+	 * Initialize fields and mine locations
 	 */
 	public void init() {
-		markedMines = new boolean[ROWS][COLS];
+		init(-1, -1);
+	}
+
+	/**
+	 * Initialize fields and mine locations, keeping the square (x, y) and the squares near
+	 * 		it free of mines so that the first click there is safe. A position outside
+	 * 		the board means there is no safe zone.
+	 * @param x, row index
+	 * @param y, column index
+	 */
+	public void init(int x, int y) {
+		long start = MinesweeperMetrics.start();
+		rng = generators.apply(seed);
+		revealedBeginning = false;
+		finished = false;
+		won = false;
 		resetAll();
-		addMines();
+		if (spreadMines)
+			addMinesSpread();
+		else
+			addMines(x, y);
 		initLabels();
+		countHidden();
+		MinesweeperMetrics.generated(start, ROWS, COLS, MINES);
+	}
+
+	/**
+	 * Start a new game with the mines in the given positions instead of random ones, for
+	 * 		example to replay a recorded game. The seed is kept, and the random number
+	 * 		generator starts over from it.
+	 * @param mines, BitSet with bit row*COLS+column set for every mine
+	 */
+	public void placeMines(BitSet mines) {
+		rng = generators.apply(seed);
+		revealedBeginning = false;
+		finished = false;
+		won = false;
+		resetAll();
+		MINES = 0;
+		for (int n=mines.nextSetBit(0);n>=0 && n<size;n=mines.nextSetBit(n+1)) {
+			setCell(n, MINE);
+			MINES++;
+		}
+		initLabels();
+		countHidden();
+		for (MinesweeperListener l : listeners)
+			l.boardReset();
 	}
 
 	/**
 	 * Remove all mines, hide everything
 	 */
 	public void resetAll() {
-		for (int i=0;i<mines.length;i++) {
-			for (int j=0;j<mines[0].length;j++) {
-				mines[i][j] = false;
-				revealed[i][j] = false;
-				labels[i][j] = 0;
-			}
+		for (int k=0;k<chunks.length;k++) {
+			if (owned[k])
+				Arrays.fill(chunks[k], (byte)0);
+			else
+				chunks[k] = new byte[Math.min(CHUNK_MASK + 1, size - (k << CHUNK_SHIFT))];
+			owned[k] = true;
 		}
+		source = null;
+		hiddenSafe = -1;
+		changed = true;
 	}
-	
+
+	/**
+	 * Choose how init() places the mines. If true, the old placement that starts over
+	 * 		whenever a row or column gets too full is used, otherwise every position is
+	 * 		equally likely.
+	 * @param b
+	 */
+	public void setSpreadMines(boolean b) {
+		spreadMines = b;
+	}
+
 	/**
-	 * Add the mines to the board. Currently, not totally random because it is to save
-	 * 		time to run for hard mode. Although not totally random, it's good enough
-	 * 		for this game. 
+	 * Add the mines to the board, every set of positions being equally likely.
 	 */
 	public void addMines() {
-		ArrayList<Integer> nums = new ArrayList<Integer>();
-		while (nums.size() < MINES) {
-			int n = (int)(Math.random() * (ROWS)) * 10000 + (int)(Math.random() * (COLS));
-			if (nums.contains(n))
-				/*nums.clear();*/continue;
-			else
-				nums.add(n);
-			if (nums.size() == MINES) {
-				int[] cs = new int[ROWS];
-				int[] csa = new int[COLS];
-				for (int na : nums) {
-					cs[na/10000]++;
-					csa[na%10000]++;
-				}
-				for (int nab : cs) {
-					if (nab > 2*ROWS/3-1) {
-						nums.clear();
-						continue;
-					}
-				}
-				for (int nab : csa) {
-					if (nab > 2*COLS/3-1) {
-						nums.clear();
-						continue;
-					}
-				}
-			}
+		addMines(-1, -1);
+	}
+
+	/**
+	 * Add the mines to the board, every set of positions outside the safe zone around
+	 * 		(x, y) being equally likely.
+	 *
+	 * This uses Floyd's sampling algorithm, which draws exactly one random number per mine:
+	 * 		for the j-th of the last MINES positions, pick a random position up to j, and
+	 * 		if it already has a mine, put the mine on j instead. The mine bits of the board
+	 * 		are used to check whether a position is taken, so this is O(MINES) time with no
+	 * 		memory besides the board itself.
+	 *
+	 * @param x, row index of the safe zone, or -1 for no safe zone
+	 * @param y, column index of the safe zone, or -1 for no safe zone
+	 */
+	public void addMines(int x, int y) {
+		int[] safe = safeZone(x, y);
+		int n = size - safe.length;
+		if (MINES > n)
+			throw new IllegalArgumentException("Cannot fit "+MINES+" mines on the board!");
+		for (int j=n-MINES;j<n;j++) {
+			int cell = skipSafe(rng.nextInt(j+1), safe);
+			if ((cell(cell) & MINE) != 0)
+				cell = skipSafe(j, safe);
+			setCell(cell, cell(cell) | MINE);
 		}
-		for (int n : nums) 
-			mines[n/10000][n%10000] = true;
 	}
-	
+
 	/**
-	 * Set up labels and use the setId() and setAccessibleHelp() methods to keep access to 
-	 * 		original text and original style. 
+	 * Helper method to find the squares that must not get a mine, which are (x, y) and the
+	 * 		squares near it.
+	 * @param x, row index
+	 * @param y, column index
+	 * @return int[] of positions stored as row*COLS+column, in increasing order
 	 */
-	private void initLabels() {
-		for (int i=0;i<labels.length;i++) {
-			for (int j=0;j<labels[0].length;j++) {
-				labels[i][j] = minesNearSelf(i, j);
-				Label lb;
-				if (mines[i][j]) {
-					lb = new Label("X");
-					lb.setStyle("-fx-text-fill: red;-fx-font-weight: bold;");
-				} else if (labels[i][j] == 0) {
-					lb = new Label(" ");
-					lb.setStyle("-fx-text-fill: blue;-fx-font-weight:bold;");
-				} else {
-					lb = new Label(String.valueOf(labels[i][j]));
-				}
-				lb.setAlignment(Pos.CENTER);
-				lb.setId(lb.getText());
-				lb.setAccessibleHelp(lb.getStyle()+"-fx-border-width: 2;-fx-border-color: darkgray;");
-				lb.setMaxSize(30, 30);
-				lb.setMinSize(30, 30);
-				lb.setLayoutX(25 + 30*j);
-				lb.setLayoutY(25 + 30*i);
-				setVisible(lb, false);
-				lbls[i][j] = lb;
+	private int[] safeZone(int x, int y) {
+		if (x < 0 || x > ROWS-1 || y < 0 || y > COLS-1)
+			return new int[0];
+		int[] safe = new int[9];
+		int size = 0;
+		for (int i=x-1;i<=x+1;i++) {
+			if (i < 0 || i > ROWS-1)
+				continue;
+			for (int j=y-1;j<=y+1;j++) {
+				if (j < 0 || j > COLS-1)
+					continue;
+				safe[size++] = i*COLS+j;
 			}
 		}
+		return Arrays.copyOf(safe, size);
 	}
-	
-	/**
-	 * Called by the main class after a user input or after user starts or stops the algorithm. 
-	 * It will change background color of the square the user is currently on to lime-green color
-	 * 
-	 * If the algorithm is deployed, the data from the algorithm is applied and the background
-	 * 		color of squares that it has data on will change. If a square is for sure a mine,
-	 * 		the color will be black; if it is definitely not a mine, the color will be blue. 
-	 * 		If a square is guaranteed to be safe or dangerous, the color will be a spectrum of 
-	 * 			green to red, with green being safer than red. This color is based on a probability
-	 * 			determined by the algorithm of a square being able to contain a mine
-	 * 
-	 * @param sfn the main class
-	 * @param sfa, optional parameter. This is sent if algorithm is deployed. 
-	 */
-	public void updateStatus(Minesweeper sfn, MinesweeperAlg...sfa) {
-		int[] currentPos = sfn.getPosition();
-		if (!(currentPos[0] == ROWS && currentPos[1] == COLS)) {
-			revealed[currentPos[0]][currentPos[1]] = true;
-			setVisible(lbls[currentPos[0]][currentPos[1]], true);
+
+	/**
+	 * Helper method to turn the n-th position that is not in the safe zone into a position
+	 * 		on the board.
+	 * @param n
+	 * @param safe, positions of the safe zone in increasing order
+	 * @return position stored as row*COLS+column
+	 */
+	private static int skipSafe(int n, int[] safe) {
+		for (int s : safe)
+			if (s <= n)
+				n++;
+		return n;
+	}
+
+	/**
+	 * Add the mines to the board, starting over whenever a row or column ends up with more
+	 * 		than 2/3 of its squares being mines. This is how mines used to be placed.
+	 * 		It is not totally random, and it can take many tries on dense boards, so it
+	 * 		is only used if asked for with setSpreadMines().
+	 */
+	public void addMinesSpread() {
+		int[] cs = new int[ROWS];
+		int[] csa = new int[COLS];
+		if (MINES > size)
+			throw new IllegalArgumentException("Cannot fit "+MINES+" mines on the board!");
+		boolean placed = false;
+		while (!placed) {
+			for (int i=0;i<size;i++)
+				setCell(i, cell(i) & ~MINE);
+			Arrays.fill(cs, 0);
+			Arrays.fill(csa, 0);
+			for (int n=0;n<MINES;) {
+				int i = rng.nextInt(ROWS);
+				int j = rng.nextInt(COLS);
+				if ((cell(i*COLS+j) & MINE) != 0)
+					continue;
+				setCell(i*COLS+j, cell(i*COLS+j) | MINE);
+				cs[i]++;
+				csa[j]++;
+				n++;
+			}
+			placed = true;
+			for (int nab : cs)
+				if (nab > 2*COLS/3-1)
+					placed = false;
+			for (int nab : csa)
+				if (nab > 2*ROWS/3-1)
+					placed = false;
 		}
+	}
+
+	/**
+	 * Determine the number on every square, which is also kept for mines so that addMine()
+	 * 		and removeMine() never have to check.
+	 *
+	 * The number of a square is the sum of the mine bits in the 3x3 block around it, minus
+	 * 		its own. This is done one row at a time: the mine bits of a row are summed with
+	 * 		the ones left and right of them, and the number of a row is then the sum of
+	 * 		that for the rows above, at and below it. Every step is a loop over plain arrays
+	 * 		with no branches or bounds to check, which the JIT can vectorize, and each square
+	 * 		is read and written once instead of reading the 8 squares around it.
+	 */
+	private void initLabels() {
+		byte[] cells = new byte[COLS];
+		byte[] above = new byte[COLS];
+		byte[] here = new byte[COLS];
+		byte[] below = new byte[COLS];
+		rowSums(0, here, cells);
+		if (ROWS > 1)
+			rowSums(1, below, cells);
 		for (int i=0;i<ROWS;i++) {
+			readRow(i, cells);
 			for (int j=0;j<COLS;j++) {
-				if (revealed[i][j]) 
-					lbls[i][j].setStyle(lbls[i][j].getAccessibleHelp() + "-fx-background-color: lightgray;");
-				else if (markedMines[i][j])
-					lbls[i][j].setStyle(lbls[i][j].getAccessibleHelp() + "-fx-background-color: fuchsia;");
-				else
-					lbls[i][j].setStyle(lbls[i][j].getAccessibleHelp() + " -fx-background-color: ghostwhite;");
+				int mine = (cells[j] & MINE) >> 4;
+				cells[j] = (byte)(cells[j] & ~NUM | above[j] + here[j] + below[j] - mine);
 			}
+			writeRow(i, cells);
+			byte[] t = above;
+			above = here;
+			here = below;
+			below = t;
+			if (i+2 < ROWS)
+				rowSums(i+2, below, cells);
+			else
+				Arrays.fill(below, (byte)0);
 		}
-		if (!revealedBeginning && currentPos[0] == ROWS && currentPos[1] == COLS) {
-			boolean b = true;
-			int x = (int)(ROWS * Math.random());
-			int y = (int)(COLS * Math.random());
-			for (int i=x;i<x+ROWS && b;i++) {
-				for (int j=y;j<y+COLS && b;j++) {
-					if (!revealed[(i%ROWS)][(j%COLS)] && !mines[(i%ROWS)][(j%COLS)] && labels[(i%ROWS)][(j%COLS)]==0) {
-						revealedBeginning = true;
-						currentPos = new int[] {i%ROWS, j%COLS};
-						revealed[i%ROWS][j%COLS] = true;
-						setVisible(lbls[i%ROWS][j%COLS], true);
-						lbls[i%ROWS][j%COLS].setStyle(lbls[i%ROWS][j%COLS].getAccessibleHelp() + "-fx-background-color: lightgray;");
-						revealAllNear(i%ROWS, j%COLS);
-						b = false;
-					}
-				}
-			}
+	}
+
+	/**
+	 * Helper method to sum the mine bits of every square of a row with the ones left and
+	 * 		right of it
+	 * @param i, row index
+	 * @param sums, where the sums are written
+	 * @param tmp, array of COLS bytes to read the row into
+	 */
+	private void rowSums(int i, byte[] sums, byte[] tmp) {
+		readRow(i, tmp);
+		for (int j=0;j<COLS;j++)
+			sums[j] = (byte)((tmp[j] & MINE) >> 4);
+		for (int j=0;j<COLS;j++)
+			tmp[j] = sums[j];
+		for (int j=1;j<COLS;j++)
+			sums[j] += tmp[j-1];
+		for (int j=0;j<COLS-1;j++)
+			sums[j] += tmp[j+1];
+	}
+
+	/**
+	 * Helper method to copy the bytes of a row out of the chunks
+	 * @param i, row index
+	 * @param dst, array of COLS bytes
+	 */
+	private void readRow(int i, byte[] dst) {
+		int n = i*COLS;
+		for (int off=0;off<COLS;) {
+			int k = n >>> CHUNK_SHIFT;
+			byte[] chunk = chunks[k] != null ? chunks[k] : load(k);
+			int len = Math.min(COLS - off, chunk.length - (n & CHUNK_MASK));
+			System.arraycopy(chunk, n & CHUNK_MASK, dst, off, len);
+			off += len;
+			n += len;
 		}
-		try {
-			if (labels[currentPos[0]][currentPos[1]] == 0)
-				revealAllNear(currentPos[0], currentPos[1]);
-		} catch (ArrayIndexOutOfBoundsException aiobe) {
-			//Ignore because I don't know how to fix this and it works fine.
+	}
+
+	/**
+	 * Helper method to copy the bytes of a row into the chunks, copying the chunks first
+	 * 		if a snapshot may share them
+	 * @param i, row index
+	 * @param src, array of COLS bytes
+	 */
+	private void writeRow(int i, byte[] src) {
+		int n = i*COLS;
+		for (int off=0;off<COLS;) {
+			int k = n >>> CHUNK_SHIFT;
+			if (!owned[k])
+				own(k);
+			int len = Math.min(COLS - off, chunks[k].length - (n & CHUNK_MASK));
+			System.arraycopy(src, off, chunks[k], n & CHUNK_MASK, len);
+			off += len;
+			n += len;
 		}
-		
-		if (sfa.length > 0) {
-			sfa[0].update();
-			double[][] values = sfa[0].calculateProbability();
-			for (int i=0;i<ROWS;i++) {
-				for (int j=0;j<COLS;j++) {
-					if (values[i][j] < 0) 
-						continue;
-					if (values[i][j] == 0)
-						lbls[i][j].setStyle(lbls[i][j].getAccessibleHelp()+"-fx-background-color: rgb(6,82,255);");
-					else if (values[i][j] == 1 && !markedMines[i][j])
-						lbls[i][j].setStyle(lbls[i][j].getAccessibleHelp()+"-fx-background-color: rgb(0,0,0);");
-					else if (values[i][j] == 1)
-						lbls[i][j].setStyle(lbls[i][j].getAccessibleHelp()+"-fx-background-color: fuchsia;");
-					else if (values[i][j] < 0.5) 
-						lbls[i][j].setStyle(lbls[i][j].getAccessibleHelp()+"-fx-background-color: rgb("+ (int)(510*values[i][j]) + ", 255, 0);");
-					else
-						lbls[i][j].setStyle(lbls[i][j].getAccessibleHelp()+"-fx-background-color: rgb(255, "+(int)(255-510*(1-values[i][j]))+", 0);");
+	}
+
+	/**
+	 * Put a mine on a square, for example for an editor or to move a mine away from the
+	 * 		first click. Only the 8 numbers around it change, so this takes constant time.
+	 * 		If a revealed square shows something different now, the listeners are told the
+	 * 		board was reset.
+	 * @param x, row index
+	 * @param y, column index
+	 */
+	public void addMine(int x, int y) {
+		changeMine(x*COLS+y, 1);
+	}
+
+	/**
+	 * Take the mine off a square, in constant time like addMine().
+	 * @param x, row index
+	 * @param y, column index
+	 */
+	public void removeMine(int x, int y) {
+		changeMine(x*COLS+y, -1);
+	}
+
+	/**
+	 * Helper method to add or remove a mine and add or subtract 1 from the numbers around it
+	 * @param n, position stored as row*COLS+column
+	 * @param change, 1 to add a mine, -1 to remove one
+	 */
+	private void changeMine(int n, int change) {
+		if (((cell(n) & MINE) != 0) == (change > 0))
+			return;
+		boolean shown = (cell(n) & REVEALED) != 0;
+		changeCell(n, cell(n) ^ MINE);
+		MINES += change;
+		for (int d : near.of(n)) {
+			setCell(n+d, cell(n+d) + change);
+			shown |= (cell(n+d) & REVEALED) != 0;
+		}
+		if (shown)
+			for (MinesweeperListener l : listeners)
+				l.boardReset();
+	}
+
+	/**
+	 * Reveal a random empty square and everything near it, so that the user does not have
+	 * 		to guess on the first move. Only does anything the first time it is called for
+	 * 		a board.
+	 *
+	 * @return IntList of positions, stored as row*COLS+column, that this move revealed. The
+	 * 		list belongs to the board and is only valid until the next move.
+	 */
+	public IntList revealBeginning() {
+		opened.clear();
+		if (revealedBeginning)
+			return opened;
+		int x = rng.nextInt(ROWS);
+		int y = rng.nextInt(COLS);
+		for (int i=x;i<x+ROWS;i++) {
+			for (int j=y;j<y+COLS;j++) {
+				if (!isRevealed((i%ROWS), (j%COLS)) && !hasMine((i%ROWS), (j%COLS)) && getValue((i%ROWS), (j%COLS))==0) {
+					revealedBeginning = true;
+					setRevealed(i%ROWS, j%COLS);
+					revealAllNear(i%ROWS, j%COLS);
+					checkWon();
+					return opened;
 				}
 			}
 		}
-		
-		try {
-			if (mines[currentPos[0]][currentPos[1]]) //Lost
-				revealAllSquares(false, sfn);
-		} catch (ArrayIndexOutOfBoundsException aiobe) {
-			//Ignore cuz it's too much work to prevent this from happening
-			//also nothing bad happens when this error comes up
-		}
+		return opened;
+	}
 
-		if (Arrays.deepEquals(this.markedMines, this.mines)) {
-			revealAllSquares(true, sfn);
-			return;
+	/**
+	 * Called when user left clicks on a square. If the square is a mine, the user loses.
+	 * 		If it is empty, all squares near it are revealed as well.
+	 *
+	 * @param x, row index
+	 * @param y, column index
+	 * @return IntList of positions, stored as row*COLS+column, that this move revealed. The
+	 * 		list belongs to the board and is only valid until the next move.
+	 */
+	public IntList reveal(int x, int y) {
+		opened.clear();
+		if (finished || isRevealed(x, y))
+			return opened;
+		setRevealed(x, y);
+		if (hasMine(x, y)) { //Lost
+			finish(false);
+			return opened;
 		}
+		if (getValue(x, y) == 0)
+			revealAllNear(x, y);
+		checkWon();
+		return opened;
+	}
 
-		for (int i=0;i<ROWS;i++)
-			for (int j=0;j<COLS;j++)
-				if (labels[i][j]>=0 && !revealed[i][j])
-					return;
-		revealAllSquares(true, sfn);
-		
+	/**
+	 * Called when user right clicks on the screen. If the square is hidden, it is marked
+	 * 		or unmarked as a mine, otherwise all squares near it are revealed if the
+	 * 		number of marked squares near it is equal to its number.
+	 *
+	 * @param x, row index
+	 * @param y, column index
+	 */
+	public void rightClick(int x, int y) {
+		if (!isRevealed(x, y))
+			flag(x, y);
+		else
+			chord(x, y);
 	}
-	
+
 	/**
-	 * Called when a user wins or steps on a mine to display all squares.
-	 * It will also turn the squares the user has revealed before this method is called to a
-	 * 		light blue background. 
-	 * 
-	 * @param b
-	 * @param sfn
+	 * Mark or unmark a hidden square as a mine.
+	 *
+	 * @param x, row index
+	 * @param y, column index
 	 */
-	private void revealAllSquares(boolean b, Minesweeper sfn) {
-		sfn.finished(b);
-		for (int i=0;i<ROWS;i++) {
-			for (int j=0;j<COLS;j++) {
-				if (i==sfn.getPosition()[0] && j==sfn.getPosition()[1]) continue;
-				if (revealed[i][j])
-					lbls[i][j].setStyle(lbls[i][j].getAccessibleHelp()+"-fx-background-color: lightgray;");
-				else
-					lbls[i][j].setStyle(lbls[i][j].getAccessibleHelp());
+	public void flag(int x, int y) {
+		if (finished || isRevealed(x, y))
+			return;
+		changeCell(x*COLS+y, cell(x*COLS+y) ^ MARKED);
+		for (MinesweeperListener l : listeners)
+			l.cellMarked(x, y, isMarked(x, y));
+		checkWon();
+	}
+
+	/**
+	 * Reveal every square near a revealed number that is not marked as a mine, provided
+	 * 		that the number of marked squares near it is equal to the number.
+	 *
+	 * @param x, row index
+	 * @param y, column index
+	 * @return IntList of positions, stored as row*COLS+column, that this move revealed. The
+	 * 		list belongs to the board and is only valid until the next move.
+	 */
+	public IntList chord(int x, int y) {
+		opened.clear();
+		if (finished || !isRevealed(x, y))
+			return opened;
+		int n = x*COLS+y;
+		int[] offs = near.of(x, y);
+		int counter = 0;
+		for (int d : offs)
+			if ((cell(n+d) & MARKED) != 0)
+				counter++;
+		if (counter != getValue(x, y))
+			return opened;
+		boolean failed = false;
+		for (int d : offs) {
+			int m = n+d;
+			if ((cell(m) & (REVEALED | MARKED)) == 0) {
+				if ((cell(m) & MINE) != 0)
+					failed = true;
+				setRevealed(m / COLS, m % COLS);
+				if ((cell(m) & (MINE | NUM)) == 0)
+					revealAllNear(m / COLS, m % COLS);
 			}
 		}
-		for (Label[] ls : lbls)
-			for (Label l : ls)
-				setVisible(l, true);
+		if (failed)
+			finish(false);
+		else
+			checkWon();
+		return opened;
 	}
-	
+
 	/**
-	 * Helper method that reveals all squares near a position (x, y)
-	 * If doing so reveals another blank (E), the method is called recursively to reveal all blanks near that
+	 * Make a batch of moves, one after another, as if reveal(), rightClick(), flag() or
+	 * 		chord() was called for each of them. The listeners are told about every square
+	 * 		as usual, so the algorithm stays up to date, but the caller only has to show
+	 * 		the board and run the algorithm once for the whole batch. The moves after the
+	 * 		one that finishes the game are not made.
+	 *
+	 * @param moves, batch of moves for this board
+	 * @return moves, holding the squares that changed and the state of the game
+	 * @throws IllegalArgumentException if the batch is for a board of another size
 	 */
-	private void revealAllNear(int x, int y) {
-		for (int i=x-1;i<=x+1;i++) {
-			if (i < 0 || i > ROWS-1)
+	public MinesweeperMoves play(MinesweeperMoves moves) {
+		if (moves.getRows() != ROWS || moves.getCols() != COLS)
+			throw new IllegalArgumentException("Moves for a "+moves.getRows()+"x"+moves.getCols()
+					+" board cannot be played on a "+ROWS+"x"+COLS+" board!");
+		moves.start();
+		IntList changed = moves.getChanged();
+		int k = 0;
+		for (;k<moves.size() && !finished;k++) {
+			int x = moves.getX(k);
+			int y = moves.getY(k);
+			int kind = moves.getKind(k);
+			if (kind == MinesweeperMoves.RIGHT_CLICK)
+				kind = isRevealed(x, y) ? MinesweeperMoves.CHORD : MinesweeperMoves.FLAG;
+			IntList revealed;
+			switch (kind) {
+			case MinesweeperMoves.FLAG:
+				if (!isRevealed(x, y))
+					changed.add(x*COLS+y);
+				flag(x, y);
 				continue;
-			for (int j=y-1;j<=y+1;j++) {
-				if (j < 0 || j > COLS-1 || i == x && j == y || revealed[i][j])
-					continue;
-				setVisible(lbls[i][j], true);
-				revealed[i][j] = true;
-				lbls[i][j].setStyle(lbls[i][j].getAccessibleHelp() + "-fx-background-color: lightgray;");
+			case MinesweeperMoves.REVEAL: revealed = reveal(x, y); break;
+			case MinesweeperMoves.CHORD: revealed = chord(x, y); break;
+			default: throw new IllegalArgumentException("Unknown kind of move "+kind+"!");
 			}
+			for (int i=0;i<revealed.size();i++)
+				changed.add(revealed.get(i));
 		}
-		for (int i=x-1;i<=x+1;i++) {
-			if (i < 0 || i > ROWS-1)
-				continue;
-			for (int j=y-1;j<=y+1;j++) {
-				if (j < 0 || j > COLS-1 || i == x && j == y)
-					continue;
-				if (labels[i][j] == 0 && !allNearRevealed(i, j)) {
-					revealAllNear(i,j);
-				}
+		moves.done(k, finished, won);
+		return moves;
+	}
+
+	/**
+	 * Check whether the user has won, which is when the marked squares are exactly the
+	 * 		mines or when every square that is not a mine is revealed.
+	 */
+	private void checkWon() {
+		if (finished)
+			return;
+		if (hiddenSafe < 0)
+			countAll();
+		if (markedMines == MINES && wrongMarks == 0 || hiddenSafe == 0)
+			finish(true);
+	}
+
+	/**
+	 * Helper method to change the byte of a square on a move, keeping the counts of
+	 * 		checkWon() up to date
+	 * @param n, position stored as row*COLS+column
+	 * @param value
+	 */
+	private void changeCell(int n, int value) {
+		if (hiddenSafe >= 0) {
+			count(cell(n), -1);
+			count(value, 1);
+		}
+		setCell(n, value);
+	}
+
+	/**
+	 * Helper method to add a square to the counts of checkWon() or take it out of them
+	 * @param cell, byte of the square
+	 * @param sign, 1 to add it, -1 to take it out
+	 */
+	private void count(int cell, int sign) {
+		if ((cell & MINE) != 0) {
+			if ((cell & MARKED) != 0)
+				markedMines += sign;
+		} else {
+			if ((cell & REVEALED) == 0)
+				hiddenSafe += sign;
+			if ((cell & MARKED) != 0)
+				wrongMarks += sign;
+		}
+	}
+
+	/**
+	 * Helper method to set the counts of checkWon() for a board where nothing is revealed
+	 * 		or marked
+	 */
+	private void countHidden() {
+		hiddenSafe = size - MINES;
+		markedMines = 0;
+		wrongMarks = 0;
+	}
+
+	/**
+	 * Helper method to count the counts of checkWon() from every square, 8 squares at a time
+	 */
+	private void countAll() {
+		int hidden = 0;
+		int marked = 0;
+		int wrong = 0;
+		for (int k=0;k<chunks.length;k++) {
+			byte[] chunk = chunks[k] != null ? chunks[k] : load(k);
+			int i = 0;
+			for (;i+8<=chunk.length;i+=8) {
+				long w = (long)WORD.get(chunk, i);
+				//REVEALED and MARKED moved onto the bit of MINE
+				long shown = w >>> 1;
+				long flag = w >>> 2;
+				hidden += Long.bitCount(~(w | shown) & LANES * MINE);
+				marked += Long.bitCount(w & flag & LANES * MINE);
+				wrong += Long.bitCount(~w & flag & LANES * MINE);
+			}
+			for (;i<chunk.length;i++) {
+				int cell = chunk[i];
+				if ((cell & (MINE | REVEALED)) == 0)
+					hidden++;
+				if ((cell & (MINE | MARKED)) == (MINE | MARKED))
+					marked++;
+				if ((cell & (MINE | MARKED)) == MARKED)
+					wrong++;
 			}
 		}
+		hiddenSafe = hidden;
+		markedMines = marked;
+		wrongMarks = wrong;
 	}
-	
-	
+
+	/**
+	 * Called when a user wins or steps on a mine.
+	 * @param b, true if user won
+	 */
+	private void finish(boolean b) {
+		finished = true;
+		won = b;
+		changed = true;
+		for (MinesweeperListener l : listeners)
+			l.gameFinished(b);
+	}
+
+	/**
+	 * Helper method to reveal a single square and tell the listeners about it
+	 * @param x, row index
+	 * @param y, column index
+	 */
+	private void setRevealed(int x, int y) {
+		changeCell(x*COLS+y, cell(x*COLS+y) | REVEALED);
+		opened.add(x*COLS+y);
+		for (MinesweeperListener l : listeners)
+			l.cellRevealed(x, y);
+	}
+
 	/**
-	 * Helper method to determine if a position (x, y) has all its squares near it revealed. 
+	 * Helper method to check whether a square is revealed
 	 * @param x, row index
 	 * @param y, column index
 	 * @return boolean
 	 */
-	private boolean allNearRevealed(int x, int y) {
-		for (int i=x-1;i<=x+1;i++) {
-			if (i < 0 || i > ROWS-1)
-				continue;
-			for (int j=y-1;j<=y+1;j++) {
-				if (j < 0 || j > COLS-1 || i == x && j == y)
-					continue;
-				if (!revealed[i][j])
-					return false;
-			}
-		}
-		return true;
+	private boolean isRevealed(int x, int y) {
+		return (cell(x*COLS+y) & REVEALED) != 0;
 	}
-	
+
 	/**
-	 * Determine how many mines are near a position (x, y)
+	 * Helper method to check whether a square has a mine
 	 * @param x, row index
 	 * @param y, column index
-	 * @return int, amount of mines near it
+	 * @return boolean
 	 */
-	public int minesNearSelf(int x, int y) {
-		if (mines[x][y])
-			return -1;
-		int counter = 0;
-		for (int i=x-1;i<=x+1;i++) {
-			if (i < 0 || i > ROWS-1)
-				continue;
-			for (int j=y-1;j<=y+1;j++) {
-				if (j < 0 || j > COLS-1 || x == i && y == j)
+	private boolean hasMine(int x, int y) {
+		return (cell(x*COLS+y) & MINE) != 0;
+	}
+
+	/**
+	 * Helper method that reveals all squares near a position (x, y)
+	 * If doing so reveals another blank (E), all squares near that blank are revealed too.
+	 *
+	 * This is a flood fill that keeps the blanks it still has to look at in a stack on the
+	 * 		heap instead of calling itself, so it can open any area without running out of
+	 * 		call stack. Every square is revealed at most once and every blank is pushed at
+	 * 		most once, so it takes time linear in the size of the area that is opened.
+	 *
+	 * @param x, row index
+	 * @param y, column index
+	 * @return IntList of positions, stored as row*COLS+column, that have been revealed by the
+	 * 		current move, including the ones revealed by this call
+	 */
+	private IntList revealAllNear(int x, int y) {
+		int before = opened.size();
+		fill.clear();
+		fill.add(x*COLS+y);
+		while (!fill.isEmpty()) {
+			int n = fill.pop();
+			for (int d : near.of(n)) {
+				int m = n+d;
+				if ((cell(m) & REVEALED) != 0)
 					continue;
-				counter += (mines[i][j] ? 1 : 0);
+				setRevealed(m / COLS, m % COLS);
+				if ((cell(m) & (MINE | NUM)) == 0)
+					fill.add(m);
 			}
 		}
-		return counter;
+		MinesweeperMetrics.flooded(opened.size() - before);
+		return opened;
 	}
 
 	/**
-	 * Called when user decides to use the same board and start over. 
+	 * Determine how many mines are near a position (x, y). The number is read from the
+	 * 		square itself, which initLabels() has already filled in.
+	 * @param x, row index
+	 * @param y, column index
+	 * @return int, amount of mines near it, -1 if the square is a mine
 	 */
-	public void restart() {
-		markedMines = new boolean[ROWS][COLS];
-		for (int i=0;i<ROWS;i++) {
-			for (int j=0;j<COLS;j++) {
-				revealed[i][j] = false;
-				setVisible(lbls[i][j], false);
-			}
-		}
-		useCheat();
+	public int minesNearSelf(int x, int y) {
+		return getValue(x, y);
 	}
-	
+
 	/**
-	 * Called when user decides to use a new board and start again
+	 * Called when user decides to use the same board and start over.
+	 *
+	 * @return IntList of positions, stored as row*COLS+column, that useCheat() revealed
 	 */
-	public void newGame() {
-		init();
+	public IntList restart() {
+		for (int i=0;i<size;i++)
+			setCell(i, cell(i) & ~(REVEALED | MARKED));
+		countHidden();
+		finished = false;
+		won = false;
+		for (MinesweeperListener l : listeners)
+			l.boardReset();
+		return useCheat();
 	}
-	
+
 	/**
-	 * Helper method to turn a label to be "visible"
-	 * @param l
-	 * @param b
+	 * Called when user decides to use a new board and start again. The seed of the new
+	 * 		board is drawn from the current generator, so a sequence of games is still
+	 * 		determined by the first seed.
 	 */
-	private void setVisible(Label l, boolean b) {
-		if (b)
-			l.setText(l.getId());
-		else
-			l.setText("");
+	public void newGame() {
+		seed = rng.nextLong();
+		init();
+		for (MinesweeperListener l : listeners)
+			l.boardReset();
 	}
-	
+
 	/**
-	 * Called when user right clicks on the screen. 
-	 * 
+	 * Called to use a new board where the square (x, y) and the squares near it have no
+	 * 		mines, so that the first click there is safe.
 	 * @param x, row index
 	 * @param y, column index
-	 * @param sfn, game class
-	 */
-	public void rightClick(int x, int y, Minesweeper sfn) {
-		if (!revealed[x][y])
-			markedMines[x][y] = !markedMines[x][y];
-		else {
-			int counter = 0;
-			for (int i=x-1;i<=x+1;i++) {
-				if (i < 0 || i > ROWS-1)
-					continue;
-				for (int j=y-1;j<=y+1;j++) {
-					if (j < 0 || j > COLS-1 || x == i && y == j)
-						continue;
-					if (markedMines[i][j])
-						counter++;
-				}
-			}
-			if (counter != labels[x][y])
-				return;
-			boolean failed = false;
-			for (int i=x-1;i<=x+1;i++) {
-				if (i < 0 || i > ROWS-1)
-					continue;
-				for (int j=y-1;j<=y+1;j++) {
-					if (j < 0 || j > COLS-1 || x == i && y == j)
-						continue;
-					if (!revealed[i][j] && !markedMines[i][j]) {
-						if (mines[i][j])
-							failed = true;
-						revealed[i][j] = true;
-						setVisible(lbls[i][j], true);
-						lbls[i][j].setStyle(lbls[i][j].getAccessibleHelp() + "-fx-background-color: lightgray;");
-						if (labels[i][j] == 0)
-							revealAllNear(i, j);
-					}
-				}
-			}
-			if (failed)
-				revealAllSquares(false, sfn);
-		}
+	 */
+	public void newGame(int x, int y) {
+		seed = rng.nextLong();
+		init(x, y);
+		for (MinesweeperListener l : listeners)
+			l.boardReset();
 	}
-	
+
 	/**
-	 * Reveal an empty square if there exists one that isn't revealed. 
-	 * If there isn't, reveal 3 squares. 
+	 * Reveal an empty square if there exists one that isn't revealed.
+	 * If there isn't, reveal 3 squares.
+	 *
+	 * @return IntList of positions, stored as row*COLS+column, that this move revealed. The
+	 * 		list belongs to the board and is only valid until the next move.
 	 */
-	public void useCheat() {
-		int x = (int)(ROWS * Math.random());
-		int y = (int)(COLS * Math.random());
+	public IntList useCheat() {
+		opened.clear();
+		if (finished)
+			return opened;
+		int x = rng.nextInt(ROWS);
+		int y = rng.nextInt(COLS);
 		for (int i=x;i<x+ROWS;i++) {
 			for (int j=y;j<y+COLS;j++) {
-				if (!revealed[(i%ROWS)][(j%COLS)] && !mines[(i%ROWS)][(j%COLS)] && labels[(i%ROWS)][(j%COLS)]==0) {
-					revealed[i%ROWS][j%COLS] = true;
-					setVisible(lbls[i%ROWS][j%COLS], true);
-					lbls[i%ROWS][j%COLS].setStyle(lbls[i%ROWS][j%COLS].getAccessibleHelp() + "-fx-background-color: lightgray;");
+				if (!isRevealed((i%ROWS), (j%COLS)) && !hasMine((i%ROWS), (j%COLS)) && getValue((i%ROWS), (j%COLS))==0) {
+					setRevealed(i%ROWS, j%COLS);
 					revealAllNear(i%ROWS, j%COLS);
-					return;
+					checkWon();
+					return opened;
 				}
 			}
 		}
 		useCheatHelper();
 		useCheatHelper();
 		useCheatHelper();
+		checkWon();
+		return opened;
 	}
-	
+
 	/**
-	 * Used to reveal 3 squares. 
+	 * Used to reveal 3 squares.
 	 */
 	private void useCheatHelper() {
-		double x = Math.random();
-		double y = Math.random();
-		for (int i=(x > 0.5 ? 0 : ROWS-1);(x > 0.5 ? i<ROWS : i>=0);i += (x > 0.5 ? 1 : -1)) {
-			for (int j=(y > 0.5 ? 0 : COLS-1);(y > 0.5 ? j<COLS : j>=0);j += (y > 0.5 ? 1 : -1)) {
-				if (!revealed[i][j] && !mines[i][j] && labels[i][j]>0) {
-					revealed[i][j] = true;
-					setVisible(lbls[i][j], true);
-					lbls[i][j].setStyle(lbls[i][j].getAccessibleHelp() + "-fx-background-color: lightgray;");
+		boolean x = rng.nextBoolean();
+		boolean y = rng.nextBoolean();
+		for (int i=(x ? 0 : ROWS-1);(x ? i<ROWS : i>=0);i += (x ? 1 : -1)) {
+			for (int j=(y ? 0 : COLS-1);(y ? j<COLS : j>=0);j += (y ? 1 : -1)) {
+				if (!isRevealed(i, j) && !hasMine(i, j) && getValue(i, j)>0) {
+					setRevealed(i, j);
 					return;
 				}
 			}
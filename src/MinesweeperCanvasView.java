@@ -0,0 +1,409 @@
+
+import javafx.geometry.VPos;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * JavaFX view of a MinesweeperBoard that draws the squares onto a single Canvas, for boards
+ * 		that are too big to have a Label for every square.
+ *
+ * Only the squares inside the viewport are drawn. Scrolling moves the viewport, scrolling
+ * 		with control held down zooms in and out around the mouse, and the board can also be
+ * 		dragged with the middle mouse button. Every combination of background and text is
+ * 		drawn once into an image for the current zoom, so drawing a square is a single
+ * 		drawImage() call. When only a few squares change, only those are drawn again.
+ *
+ * @author Haoxian (Roger) Hu
+ */
+public final class MinesweeperCanvasView implements MinesweeperView {
+
+	//Largest size of the viewport in pixels
+	public static final int MAX_WIDTH = 900;
+	public static final int MAX_HEIGHT = 600;
+
+	//Limits of the zoom, where 1 means 30 pixels for every square like the label view
+	private static final double MIN_ZOOM = 0.1;
+	private static final double MAX_ZOOM = 4;
+
+	/**
+	 * Backgrounds of the squares. The first RISK_LEVELS+3 match the colours of
+	 * 		MinesweeperView.riskOf(), then come hidden, revealed, marked, and hidden after the
+	 * 		game is over.
+	 */
+	private static final int BG_HIDDEN = 3 + RISK_LEVELS;
+	private static final int BG_REVEALED = BG_HIDDEN + 1;
+	private static final int BG_MARKED = BG_HIDDEN + 2;
+	private static final int BG_FINISHED = BG_HIDDEN + 3;
+	private static final Color[] BACKGROUNDS = new Color[BG_FINISHED + 1];
+	static {
+		BACKGROUNDS[1] = Color.rgb(6, 82, 255);
+		BACKGROUNDS[2] = Color.rgb(0, 0, 0);
+		for (int i=0;i<RISK_LEVELS;i++) {
+			double v = (i + 0.5) / RISK_LEVELS;
+			if (v < 0.5)
+				BACKGROUNDS[3+i] = Color.rgb((int)(510*v), 255, 0);
+			else
+				BACKGROUNDS[3+i] = Color.rgb(255, (int)(255-510*(1-v)), 0);
+		}
+		BACKGROUNDS[BG_HIDDEN] = Color.GHOSTWHITE;
+		BACKGROUNDS[BG_REVEALED] = Color.LIGHTGRAY;
+		BACKGROUNDS[BG_MARKED] = Color.FUCHSIA;
+		BACKGROUNDS[BG_FINISHED] = Color.WHITE;
+	}
+
+	//Texts of the squares: nothing, the numbers 0 (shown as blank) to 8, and a mine
+	private static final int GLYPH_NONE = 0;
+	private static final int GLYPH_MINE = 10;
+	private static final int GLYPHS = 11;
+
+	//Board that is shown by this view
+	private MinesweeperBoard board;
+
+	//Information on the board itself
+	private int ROWS;
+	private int COLS;
+
+	//Canvas the board is drawn on, and the size of the viewport
+	private Canvas canvas;
+	private int width;
+	private int height;
+
+	//Size of a square in pixels, and the position of the viewport on the board in pixels
+	private double zoom = 1;
+	private int tile = 30;
+	private double offsetX = 0;
+	private double offsetY = 0;
+
+	//Images of every combination of background and text at the current size, made when first needed
+	private Image[] tiles = new Image[BACKGROUNDS.length * GLYPHS];
+
+	//Colour the algorithm last gave each square, as given by MinesweeperView.riskOf()
+	private byte[] risk;
+
+	//Positions, stored as row*COLS+column, that have to be drawn again, and that have a colour from the algorithm
+	private IntList dirty = new IntList();
+	private IntList coloured = new IntList();
+
+	//Whether the whole viewport has to be drawn again, for example after scrolling
+	private boolean redrawAll = true;
+
+	//Position of the last middle button drag
+	private double dragX;
+	private double dragY;
+
+	//Current position of the user, squares other than this one lose their colours when the game is over
+	private int[] pos = new int[] {-1, -1};
+
+	/**
+	 * Constructor
+	 *
+	 * @param bboard, board to show
+	 */
+	public MinesweeperCanvasView(MinesweeperBoard bboard) {
+		board = bboard;
+		ROWS = board.getRows();
+		COLS = board.getCols();
+		width = viewportWidth(COLS);
+		height = viewportHeight(ROWS);
+		risk = new byte[ROWS * COLS];
+		canvas = new Canvas(width, height);
+		canvas.setLayoutX(25);
+		canvas.setLayoutY(25);
+		initListeners();
+		board.addListener(this);
+	}
+
+	/**
+	 * Width in pixels that the view of a board with the given number of columns takes
+	 * @param cols
+	 * @return int
+	 */
+	public static int viewportWidth(int cols) {
+		return (int)Math.min(30L*cols, MAX_WIDTH);
+	}
+
+	/**
+	 * Height in pixels that the view of a board with the given number of rows takes
+	 * @param rows
+	 * @return int
+	 */
+	public static int viewportHeight(int rows) {
+		return (int)Math.min(30L*rows, MAX_HEIGHT);
+	}
+
+	/**
+	 * Set up scrolling, zooming and dragging of the viewport
+	 */
+	private void initListeners() {
+		canvas.setOnScroll(e -> {
+			if (e.isControlDown()) {
+				double factor = e.getDeltaY() > 0 ? 1.25 : 1/1.25;
+				zoomAround(zoom * factor, e.getX(), e.getY());
+			} else {
+				scrollTo(offsetX - e.getDeltaX(), offsetY - e.getDeltaY());
+			}
+			e.consume();
+		});
+		canvas.setOnMousePressed(e -> {
+			dragX = e.getX();
+			dragY = e.getY();
+		});
+		canvas.setOnMouseDragged(e -> {
+			if (e.getButton() != MouseButton.MIDDLE)
+				return;
+			scrollTo(offsetX - (e.getX() - dragX), offsetY - (e.getY() - dragY));
+			dragX = e.getX();
+			dragY = e.getY();
+		});
+	}
+
+	/**
+	 * Change the zoom, keeping the point of the board under (px, py) of the viewport in place
+	 * @param z, new zoom
+	 * @param px
+	 * @param py
+	 */
+	private void zoomAround(double z, double px, double py) {
+		z = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, z));
+		int t = Math.max(2, (int)Math.round(30 * z));
+		if (t == tile)
+			return;
+		double boardX = (offsetX + px) / tile;
+		double boardY = (offsetY + py) / tile;
+		zoom = z;
+		tile = t;
+		tiles = new Image[tiles.length];
+		scrollTo(boardX * tile - px, boardY * tile - py);
+		redrawAll = true;
+		draw();
+	}
+
+	/**
+	 * Move the viewport so that its top left corner is at (x, y) of the board in pixels
+	 * @param x
+	 * @param y
+	 */
+	private void scrollTo(double x, double y) {
+		double nx = Math.max(0, Math.min((double)COLS * tile - width, x));
+		double ny = Math.max(0, Math.min((double)ROWS * tile - height, y));
+		if (nx == offsetX && ny == offsetY)
+			return;
+		offsetX = nx;
+		offsetY = ny;
+		redrawAll = true;
+		draw();
+	}
+
+	@Override
+	public void addTo(Pane pane) {
+		pane.getChildren().add(canvas);
+	}
+
+	@Override
+	public double getWidth() {
+		return width;
+	}
+
+	@Override
+	public double getHeight() {
+		return height;
+	}
+
+	@Override
+	public int[] cellAt(double sceneX, double sceneY) {
+		double px = sceneX - canvas.getLayoutX();
+		double py = sceneY - canvas.getLayoutY();
+		if (px < 0 || py < 0 || px >= width || py >= height)
+			return null;
+		int y = (int)((offsetX + px) / tile);
+		int x = (int)((offsetY + py) / tile);
+		if (x >= ROWS || y >= COLS)
+			return null;
+		return new int[] {x, y};
+	}
+
+	@Override
+	public void showProbability(Minesweeper sfn, double[][] values) {
+		for (int k=0;k<coloured.size();k++) {
+			risk[coloured.get(k)] = 0;
+			dirty.add(coloured.get(k));
+		}
+		coloured.clear();
+
+		if (values != null) {
+			for (int i=0;i<ROWS;i++) {
+				for (int j=0;j<COLS;j++) {
+					int r = MinesweeperView.riskOf(values[i][j], board.isMarked(i, j));
+					if (r == 0)
+						continue;
+					risk[i*COLS+j] = (byte)r;
+					coloured.add(i*COLS+j);
+					dirty.add(i*COLS+j);
+				}
+			}
+		}
+		updateStatus(sfn);
+	}
+
+	@Override
+	public void updateStatus(Minesweeper sfn) {
+		long start = MinesweeperMetrics.start();
+		int[] p = sfn.getPosition();
+		if (p[0] != pos[0] || p[1] != pos[1]) {
+			if (pos[0] >= 0 && pos[0] < ROWS && pos[1] >= 0 && pos[1] < COLS)
+				dirty.add(pos[0]*COLS+pos[1]);
+			pos = p.clone();
+		}
+
+		if (board.isFinished())
+			sfn.finished(board.isWon());
+		MinesweeperMetrics.restyled(start, draw());
+	}
+
+	/**
+	 * Draw the squares that have changed, or the whole viewport if it has moved or too
+	 * 		many squares have changed.
+	 *
+	 * @return number of squares drawn
+	 */
+	private int draw() {
+		GraphicsContext gc = canvas.getGraphicsContext2D();
+		int firstRow = (int)(offsetY / tile);
+		int firstCol = (int)(offsetX / tile);
+		int lastRow = Math.min(ROWS-1, (int)((offsetY + height) / tile));
+		int lastCol = Math.min(COLS-1, (int)((offsetX + width) / tile));
+		if (dirty.size() > (lastRow-firstRow+1) * (lastCol-firstCol+1) / 4)
+			redrawAll = true;
+		int drawn = 0;
+		if (redrawAll) {
+			gc.setFill(Color.WHITE);
+			gc.fillRect(0, 0, width, height);
+			for (int i=firstRow;i<=lastRow;i++)
+				for (int j=firstCol;j<=lastCol;j++)
+					drawSquare(gc, i, j);
+			drawn = (lastRow-firstRow+1) * (lastCol-firstCol+1);
+		} else {
+			for (int k=0;k<dirty.size();k++) {
+				int i = dirty.get(k) / COLS;
+				int j = dirty.get(k) % COLS;
+				if (i >= firstRow && i <= lastRow && j >= firstCol && j <= lastCol) {
+					drawSquare(gc, i, j);
+					drawn++;
+				}
+			}
+		}
+		dirty.clear();
+		redrawAll = false;
+		return drawn;
+	}
+
+	/**
+	 * Draw a single square from the images of the squares
+	 * @param gc
+	 * @param x, row index
+	 * @param y, column index
+	 */
+	private void drawSquare(GraphicsContext gc, int x, int y) {
+		boolean finished = board.isFinished() && !(x == pos[0] && y == pos[1]);
+		boolean hidden = board.isUnrevealed(x, y);
+		int bg;
+		if (finished)
+			bg = hidden ? BG_FINISHED : BG_REVEALED;
+		else if (risk[x*COLS+y] != 0)
+			bg = risk[x*COLS+y];
+		else if (!hidden)
+			bg = BG_REVEALED;
+		else if (board.isMarked(x, y))
+			bg = BG_MARKED;
+		else
+			bg = BG_HIDDEN;
+		int glyph = GLYPH_NONE;
+		if (!hidden || board.isFinished()) {
+			int value = board.getValue(x, y);
+			glyph = value < 0 ? GLYPH_MINE : 1 + value;
+		}
+		gc.drawImage(tile(bg, glyph), y * tile - offsetX, x * tile - offsetY);
+	}
+
+	/**
+	 * Get the image of a square with the given background and text, drawing it first if
+	 * 		it is not made yet for the current zoom.
+	 * @param bg, index in BACKGROUNDS
+	 * @param glyph, index of the text
+	 * @return Image
+	 */
+	private Image tile(int bg, int glyph) {
+		int key = bg * GLYPHS + glyph;
+		if (tiles[key] != null)
+			return tiles[key];
+		Canvas c = new Canvas(tile, tile);
+		GraphicsContext gc = c.getGraphicsContext2D();
+		gc.setFill(BACKGROUNDS[bg]);
+		gc.fillRect(0, 0, tile, tile);
+		if (tile >= 6) {
+			double border = Math.max(1, 2 * zoom);
+			gc.setStroke(Color.DARKGRAY);
+			gc.setLineWidth(border);
+			gc.strokeRect(border/2, border/2, tile-border, tile-border);
+		}
+		//Blanks (glyph 1) have no text, and text is left out when it would be too small to read
+		if (glyph > 1 && tile >= 10) {
+			boolean mine = glyph == GLYPH_MINE;
+			gc.setFont(Font.font(Font.getDefault().getFamily(), mine ? FontWeight.BOLD : FontWeight.NORMAL, 12 * zoom));
+			gc.setFill(mine ? Color.RED : Color.BLACK);
+			gc.setTextAlign(TextAlignment.CENTER);
+			gc.setTextBaseline(VPos.CENTER);
+			gc.fillText(mine ? "X" : String.valueOf(glyph - 1), tile/2.0, tile/2.0);
+		}
+		SnapshotParameters params = new SnapshotParameters();
+		params.setFill(Color.TRANSPARENT);
+		tiles[key] = c.snapshot(params, null);
+		return tiles[key];
+	}
+
+	/**
+	 * Draw a square again once the board reveals it, without the colour the algorithm
+	 * 		gave it while it was hidden
+	 */
+	@Override
+	public void cellRevealed(int x, int y) {
+		risk[x*COLS+y] = 0;
+		dirty.add(x*COLS+y);
+	}
+
+	/**
+	 * Draw a square again once the user marks or unmarks it
+	 */
+	@Override
+	public void cellMarked(int x, int y, boolean marked) {
+		dirty.add(x*COLS+y);
+	}
+
+	/**
+	 * Every square changes when the game is over
+	 */
+	@Override
+	public void gameFinished(boolean won) {
+		redrawAll = true;
+	}
+
+	/**
+	 * Forget the colours of the algorithm and draw everything again
+	 */
+	@Override
+	public void boardReset() {
+		for (int k=0;k<coloured.size();k++)
+			risk[coloured.get(k)] = 0;
+		coloured.clear();
+		dirty.clear();
+		redrawAll = true;
+	}
+}
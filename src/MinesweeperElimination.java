@@ -0,0 +1,485 @@
+import java.util.Arrays;
+
+/**
+ * Finds squares that must be mines or must be safe by treating every revealed number as a
+ * 		linear equation over the non revealed squares near it that are not solved yet:
+ * 		the sum of those squares (1 for a mine, 0 for safe) is the number minus the mines
+ * 		already known near it.
+ *
+ * The equations are put in reduced row echelon form with Gaussian elimination, and every
+ * 		row is then checked against the fact that each square is 0 or 1. For example if a
+ * 		row says A + B - C = 2, A and B must be mines and C must be safe. This catches the
+ * 		patterns where one number's squares overlap another's, such as 1-2-1 and 1-2-2-1,
+ * 		which the rules in MinesweeperAlg.lookThroughNumbers() that look at one number at a
+ * 		time cannot see.
+ *
+ * Rows are stored sparsely as sorted variable indexes with integer coefficients, and the
+ * 		variables are numbered in breadth first order over the numbers, so that squares
+ * 		close to each other get close indexes. Rows then only mix with rows of nearby
+ * 		numbers, and the elimination stays close to linear in the size of the frontier
+ * 		instead of cubic.
+ *
+ * The algorithm tells this class with changed() which numbers have a different equation
+ * 		since the last call, and solve() only builds the equations of the parts of the
+ * 		frontier those numbers are connected to. A part of the frontier that has not
+ * 		changed gives the same rows as last time, so nothing new can be found there, and
+ * 		a call takes time for the parts that changed instead of the whole board. The lists
+ * 		and arrays are kept from call to call.
+ *
+ * @author Haoxian (Roger) Hu
+ */
+public final class MinesweeperElimination {
+
+	//Board to solve
+	private MinesweeperBoard board;
+	private int ROWS;
+	private int COLS;
+
+	//Squares near every square
+	private Neighbours near;
+
+	//Variable index of every square, -1 if it is not on the frontier
+	private int[] varOf;
+
+	//What was found about every variable in the current call, 0 nothing, 1 mine, 2 safe
+	private byte[] found = new byte[0];
+
+	//Squares found in the current call, stored as row*COLS+column
+	private IntList mines;
+	private IntList safe;
+
+	//Variable of every variable index, stored as row*COLS+column
+	private int[] posOf = new int[0];
+
+	//Numbers whose equation changed since the last call, and whether each number is in it
+	private IntList dirty = new IntList();
+	private boolean[] isDirty;
+
+	//Numbers of the current call, whether each square is one of them, and the same sorted
+	private IntList numbers = new IntList();
+	private boolean[] inSystem;
+	private int[] sorted = new int[0];
+
+	//Equations of the current call, the same as in MinesweeperProbability
+	private IntList vars = new IntList();
+	private IntList cons = new IntList();
+	private IntList conStart = new IntList();
+	private IntList conTarget = new IntList();
+
+	//Arrays of eliminate(), which only grow, and the variables of one equation, at most 8
+	private int[] varConStart = new int[1];
+	private int[] varCons = new int[0];
+	private int[] fill = new int[0];
+	private int[] order = new int[0];
+	private int[] rank = new int[0];
+	private int[] conOrder = new int[0];
+	private boolean[] conSeen = new boolean[0];
+	private int[] idx = new int[8];
+	private Row[] pivot = new Row[0];
+
+	/**
+	 * Constructor
+	 *
+	 * @param bboard, board to solve
+	 */
+	public MinesweeperElimination(MinesweeperBoard bboard) {
+		board = bboard;
+		ROWS = board.getRows();
+		COLS = board.getCols();
+		near = board.getNeighbours();
+		varOf = new int[ROWS * COLS];
+		Arrays.fill(varOf, -1);
+		isDirty = new boolean[ROWS * COLS];
+		inSystem = new boolean[ROWS * COLS];
+	}
+
+	/**
+	 * Tell solve() that the equation of a square changed, because it was revealed or a
+	 * 		square near it was revealed or solved. Squares that are not revealed numbers are
+	 * 		ignored.
+	 *
+	 * @param n, position stored as row*COLS+column
+	 */
+	public void changed(int n) {
+		if (!isDirty[n]) {
+			isDirty[n] = true;
+			dirty.add(n);
+		}
+	}
+
+	/**
+	 * Find the squares near revealed numbers that must be mines or must be safe, in the
+	 * 		parts of the frontier connected to a number given to changed() since the last
+	 * 		call. Squares the caller already knows about are left out of the equations.
+	 *
+	 * @param mineCertainty, squares the caller already knows are mines, at index row*COLS+column
+	 * @param cannotBeMine, squares the caller already knows are safe, at index row*COLS+column
+	 * @param mmines, squares found to be mines are added to it
+	 * @param ssafe, squares found to be safe are added to it
+	 * @return whether anything new was found
+	 */
+	public boolean solve(boolean[] mineCertainty, boolean[] cannotBeMine, IntList mmines, IntList ssafe) {
+
+		/**
+		 * Starting from the numbers that changed, find every revealed number that shares a
+		 * 		square that is not solved yet with a number found so far. The squares are
+		 * 		numbered here only to mark them, and the numbers are put back in the order of
+		 * 		the board, so the equations are the same as if the whole board was scanned.
+		 */
+		numbers.clear();
+		for (int k=0;k<dirty.size();k++) {
+			int p = dirty.get(k);
+			isDirty[p] = false;
+			if (!inSystem[p] && board.isNumAndRevealed(p)) {
+				inSystem[p] = true;
+				numbers.add(p);
+			}
+		}
+		dirty.clear();
+		vars.clear();
+		for (int head=0;head<numbers.size();head++) {
+			int p = numbers.get(head);
+			for (int d : near.of(p)) {
+				int n = p+d;
+				if (varOf[n] >= 0 || !board.isUnrevealed(n) || mineCertainty[n] || cannotBeMine[n])
+					continue;
+				varOf[n] = vars.size();
+				vars.add(n);
+				for (int e : near.of(n)) {
+					int q = n+e;
+					if (!inSystem[q] && board.isNumAndRevealed(q)) {
+						inSystem[q] = true;
+						numbers.add(q);
+					}
+				}
+			}
+		}
+		for (int k=0;k<vars.size();k++)
+			varOf[vars.get(k)] = -1;
+		vars.clear();
+		int nn = numbers.size();
+		if (sorted.length < nn)
+			sorted = new int[Math.max(nn, 2 * sorted.length)];
+		for (int k=0;k<nn;k++) {
+			sorted[k] = numbers.get(k);
+			inSystem[sorted[k]] = false;
+		}
+		Arrays.sort(sorted, 0, nn);
+
+		/**
+		 * Same as in MinesweeperProbability, make the equation of every number with a non
+		 * 		revealed square near it that is not solved yet.
+		 */
+		cons.clear();
+		conStart.clear();
+		conTarget.clear();
+		for (int k=0;k<nn;k++) {
+			int p = sorted[k];
+			int target = board.getNum(p);
+			int start = cons.size();
+			for (int d : near.of(p)) {
+				int n = p+d;
+				if (!board.isUnrevealed(n)) continue;
+				if (mineCertainty[n]) {
+					target--;
+				} else if (!cannotBeMine[n]) {
+					if (varOf[n] < 0) {
+						varOf[n] = vars.size();
+						vars.add(n);
+					}
+					cons.add(varOf[n]);
+				}
+			}
+			if (cons.size() == start)
+				continue;
+			conStart.add(start);
+			conTarget.add(target);
+		}
+		conStart.add(cons.size());
+
+		mines = mmines;
+		safe = ssafe;
+		try {
+			return eliminate();
+		} finally {
+			for (int k=0;k<vars.size();k++)
+				varOf[vars.get(k)] = -1;
+			mines = null;
+			safe = null;
+		}
+	}
+
+	/**
+	 * Number the variables in breadth first order, reduce the equations and check every row.
+	 *
+	 * @return whether anything new was found
+	 */
+	private boolean eliminate() {
+		int nv = vars.size();
+		int nc = conTarget.size();
+		if (found.length < nv)
+			found = new byte[Math.max(nv, 2 * found.length)];
+		Arrays.fill(found, 0, nv, (byte)0);
+		int foundBefore = mines.size() + safe.size();
+		if (order.length < nv) {
+			int len = Math.max(nv, 2 * order.length);
+			varConStart = new int[len + 1];
+			fill = new int[len];
+			order = new int[len];
+			rank = new int[len];
+			posOf = new int[len];
+			pivot = new Row[len];
+		}
+		if (conOrder.length < nc) {
+			int len = Math.max(nc, 2 * conOrder.length);
+			conOrder = new int[len];
+			conSeen = new boolean[len];
+		}
+		if (varCons.length < cons.size())
+			varCons = new int[Math.max(cons.size(), 2 * varCons.length)];
+
+		//Constraints of every variable, stored the same way as the variables of every constraint
+		Arrays.fill(varConStart, 0, nv + 1, 0);
+		for (int k=0;k<cons.size();k++)
+			varConStart[cons.get(k) + 1]++;
+		for (int v=0;v<nv;v++)
+			varConStart[v + 1] += varConStart[v];
+		System.arraycopy(varConStart, 0, fill, 0, nv);
+		for (int c=0;c<nc;c++)
+			for (int k=conStart.get(c);k<conStart.get(c + 1);k++)
+				varCons[fill[cons.get(k)]++] = c;
+
+		//Breadth first order of the variables, and of the constraints as they are reached
+		Arrays.fill(rank, 0, nv, -1);
+		Arrays.fill(conSeen, 0, nc, false);
+		int nOrdered = 0;
+		int nConOrdered = 0;
+		for (int s=0;s<nv;s++) {
+			if (rank[s] >= 0)
+				continue;
+			rank[s] = nOrdered;
+			order[nOrdered++] = s;
+			for (int head=nOrdered-1;head<nOrdered;head++) {
+				int v = order[head];
+				for (int k=varConStart[v];k<varConStart[v + 1];k++) {
+					int c = varCons[k];
+					if (conSeen[c])
+						continue;
+					conSeen[c] = true;
+					conOrder[nConOrdered++] = c;
+					for (int q=conStart.get(c);q<conStart.get(c + 1);q++) {
+						int u = cons.get(q);
+						if (rank[u] < 0) {
+							rank[u] = nOrdered;
+							order[nOrdered++] = u;
+						}
+					}
+				}
+			}
+		}
+		for (int r=0;r<nv;r++)
+			posOf[r] = vars.get(order[r]);
+
+		/**
+		 * Forward elimination. Every equation is reduced by the pivot rows of its leading
+		 * 		variable until its leading variable has no pivot row, and then becomes the
+		 * 		pivot row of that variable.
+		 */
+		Arrays.fill(pivot, 0, nv, null);
+		for (int k=0;k<nc;k++) {
+			int c = conOrder[k];
+			int len = conStart.get(c + 1) - conStart.get(c);
+			for (int q=0;q<len;q++)
+				idx[q] = rank[cons.get(conStart.get(c) + q)];
+			Arrays.sort(idx, 0, len);
+			long[] coef = new long[len];
+			Arrays.fill(coef, 1);
+			Row row = new Row(Arrays.copyOf(idx, len), coef, conTarget.get(c));
+			check(row);
+			try {
+				while (row.idx.length > 0 && pivot[row.idx[0]] != null)
+					row = row.reduce(pivot[row.idx[0]], 0);
+			} catch (ArithmeticException e) {
+				continue;
+			}
+			if (row.idx.length == 0)
+				continue;
+			check(row);
+			pivot[row.idx[0]] = row;
+		}
+
+		/**
+		 * Back substitution. Going from the last pivot to the first, every variable after the
+		 * 		leading one that has a pivot row is removed, so the rows that are already done
+		 * 		only have their leading variable and variables without a pivot row.
+		 */
+		for (int v=nv-1;v>=0;v--) {
+			Row row = pivot[v];
+			if (row == null)
+				continue;
+			int k = 1;
+			while (k < row.idx.length) {
+				int u = row.idx[k];
+				if (pivot[u] == null) {
+					k++;
+					continue;
+				}
+				try {
+					row = row.reduce(pivot[u], k);
+				} catch (ArithmeticException e) {
+					break;
+				}
+			}
+			pivot[v] = row;
+			check(row);
+		}
+		Arrays.fill(pivot, 0, nv, null);
+		return mines.size() + safe.size() > foundBefore;
+	}
+
+	/**
+	 * Find the variables of a row that have to be 0 or 1. With P the sum of the positive
+	 * 		coefficients and N the sum of the negative ones, the row can give anything between
+	 * 		N and P. A variable with a positive coefficient c must be 0 if the others cannot
+	 * 		reach the target without going below N + c, and must be 1 if they cannot reach it
+	 * 		without going over P - c, and the other way around for a negative coefficient.
+	 * 		Nothing is found in a row whose sums do not fit in a long.
+	 *
+	 * @param row
+	 */
+	private void check(Row row) {
+		try {
+			long pos = 0;
+			long neg = 0;
+			for (long c : row.coef) {
+				if (c > 0)
+					pos = Math.addExact(pos, c);
+				else
+					neg = Math.addExact(neg, c);
+			}
+			long t = row.target;
+			if (t > neg && t < pos && Math.subtractExact(t, neg) >= maxAbs(row) && Math.subtractExact(pos, t) >= maxAbs(row))
+				return;
+			for (int k=0;k<row.idx.length;k++) {
+				long c = row.coef[k];
+				if (c > 0) {
+					if (Math.subtractExact(t, c) < neg)
+						set(row.idx[k], false);
+					else if (t > Math.subtractExact(pos, c))
+						set(row.idx[k], true);
+				} else {
+					if (Math.subtractExact(t, c) > pos)
+						set(row.idx[k], false);
+					else if (t < Math.subtractExact(neg, c))
+						set(row.idx[k], true);
+				}
+			}
+		} catch (ArithmeticException e) {
+			return;
+		}
+	}
+
+	/**
+	 * @return largest absolute value of the coefficients of a row
+	 */
+	private static long maxAbs(Row row) {
+		long m = 0;
+		for (long c : row.coef)
+			m = Math.max(m, Math.absExact(c));
+		return m;
+	}
+
+	/**
+	 * Remember that a variable must be a mine or must be safe, once.
+	 *
+	 * @param v, variable index
+	 * @param mine
+	 */
+	private void set(int v, boolean mine) {
+		if (found[v] != 0)
+			return;
+		found[v] = (byte)(mine ? 1 : 2);
+		if (mine)
+			mines.add(posOf[v]);
+		else
+			safe.add(posOf[v]);
+	}
+
+	/**
+	 * An equation, sum of coef[k] times variable idx[k] equals target. The indexes are
+	 * 		sorted, no coefficient is 0, and the first coefficient is positive.
+	 */
+	private static final class Row {
+		final int[] idx;
+		final long[] coef;
+		final long target;
+
+		Row(int[] i, long[] c, long t) {
+			idx = i;
+			coef = c;
+			target = t;
+		}
+
+		/**
+		 * Remove the leading variable of p from this row, without fractions, by taking
+		 * 		a times this row minus b times p, where a and b make the variable cancel and
+		 * 		are divided by their greatest common divisor first.
+		 *
+		 * @param p, pivot row
+		 * @param at, position in this row of the leading variable of p
+		 * @return new row, divided by the greatest common divisor of its numbers
+		 * @throws ArithmeticException if a number of the new row does not fit in a long, in
+		 * 		which case the row has to be dropped
+		 */
+		Row reduce(Row p, int at) {
+			long g0 = gcd(Math.absExact(p.coef[0]), Math.absExact(coef[at]));
+			long a = p.coef[0] / g0;
+			long b = coef[at] / g0;
+			int[] ni = new int[idx.length + p.idx.length];
+			long[] nc = new long[ni.length];
+			int n = 0;
+			int x = 0;
+			int y = 0;
+			while (x < idx.length || y < p.idx.length) {
+				int u;
+				long c;
+				if (y == p.idx.length || x < idx.length && idx[x] < p.idx[y]) {
+					u = idx[x];
+					c = Math.multiplyExact(a, coef[x++]);
+				} else if (x == idx.length || p.idx[y] < idx[x]) {
+					u = p.idx[y];
+					c = Math.negateExact(Math.multiplyExact(b, p.coef[y++]));
+				} else {
+					u = idx[x];
+					c = Math.subtractExact(Math.multiplyExact(a, coef[x++]), Math.multiplyExact(b, p.coef[y++]));
+				}
+				if (c != 0) {
+					ni[n] = u;
+					nc[n++] = c;
+				}
+			}
+			long t = Math.subtractExact(Math.multiplyExact(a, target), Math.multiplyExact(b, p.target));
+
+			long g = Math.absExact(t);
+			for (int k=0;k<n;k++)
+				g = gcd(g, Math.absExact(nc[k]));
+			if (n > 0 && nc[0] < 0)
+				g = -g;
+			if (g != 0 && g != 1) {
+				for (int k=0;k<n;k++)
+					nc[k] /= g;
+				t /= g;
+			}
+			return new Row(Arrays.copyOf(ni, n), Arrays.copyOf(nc, n), t);
+		}
+
+		private static long gcd(long a, long b) {
+			while (b != 0) {
+				long r = a % b;
+				a = b;
+				b = r;
+			}
+			return a;
+		}
+	}
+}
@@ -0,0 +1,551 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Board without edges for infinite Minesweeper. Squares have int coordinates in both
+ * 		directions, so the board is 2^32 by 2^32 squares and wraps around at the ends,
+ * 		which nobody will ever reach.
+ *
+ * The board is split into chunks of 64x64 squares. The mines of a chunk come from a hash of
+ * 		the seed and the position of the chunk, so they do not have to be stored: a chunk
+ * 		is only made the first time a move or a number near it needs it, and its mines
+ * 		are the same every time it is made again. Each square has a mine with probability
+ * 		density, except the squares around (0, 0), where the game starts.
+ *
+ * Only what the user did to a chunk, which squares are revealed and marked, has to be kept.
+ * 		Chunks are kept in memory in a least recently used cache of maxChunks chunks. When
+ * 		a chunk that was changed falls out of the cache, it is written to its own slot of
+ * 		4KB in the spill file, and read back from there when it is needed again, so memory
+ * 		is bounded by the cache and the disk grows with the area explored, never with the
+ * 		size of the board.
+ *
+ * Flood fill, numbers and chords work across chunks the same way as inside one. To use the
+ * 		algorithm, window() copies a rectangle of the board into a MinesweeperBoard, which
+ * 		is how MinesweeperSimulator plays infinite games.
+ *
+ * @author Haoxian (Roger) Hu
+ */
+public final class MinesweeperInfiniteBoard implements Closeable {
+
+	//Chunks are SIZE x SIZE squares
+	private static final int SHIFT = 6;
+	private static final int SIZE = 1 << SHIFT;
+	private static final int MASK = SIZE - 1;
+
+	//Smallest density allowed, below which the blanks could go on forever
+	private static final double MIN_DENSITY = 0.15;
+
+	//Seed of the board and probability of a square having a mine
+	private final long seed;
+	private final double density;
+
+	//Chunks in memory, the least recently used first, and the last one used
+	private final LinkedHashMap<Long, Chunk> chunks;
+	private long lastKey;
+	private Chunk last;
+
+	//Where chunks that fall out of the cache are written, and the slot of every chunk written
+	private final Path spillPath;
+	private final boolean temporary;
+	private FileChannel spill;
+	private final HashMap<Long, Long> slots = new HashMap<Long, Long>();
+
+	//Whether the user has stepped on a mine, and the number of squares revealed
+	private boolean finished = false;
+	private long revealed = 0;
+
+	//Squares the flood fill still has to look at, stored as x << 32 | y
+	private long[] fill = new long[64];
+	private int fillSize = 0;
+
+	/**
+	 * Constructor, keeping 4096 chunks (about 16MB) in memory and spilling the others to a
+	 * 		temporary file that is deleted by close()
+	 *
+	 * @param sd, seed of the board
+	 * @param d, probability of a square having a mine
+	 * @throws IOException
+	 */
+	public MinesweeperInfiniteBoard(long sd, double d) throws IOException {
+		this(sd, d, 4096, null);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param sd, seed of the board
+	 * @param d, probability of a square having a mine, at least 0.15
+	 * @param maxChunks, number of chunks kept in memory
+	 * @param spillFile, where the chunks that do not fit are written, or null for a
+	 * 		temporary file that is deleted by close()
+	 * @throws IOException
+	 */
+	public MinesweeperInfiniteBoard(long sd, double d, int maxChunks, Path spillFile) throws IOException {
+		if (d < MIN_DENSITY || d >= 1)
+			throw new IllegalArgumentException("Density of mines must be between "+MIN_DENSITY+" and 1!");
+		if (maxChunks < 16)
+			throw new IllegalArgumentException("At least 16 chunks must fit in memory!");
+		seed = sd;
+		density = d;
+		temporary = spillFile == null;
+		spillPath = temporary ? Files.createTempFile("minesweeper", ".chunks") : spillFile;
+		chunks = new LinkedHashMap<Long, Chunk>(2 * maxChunks, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+				if (size() <= maxChunks)
+					return false;
+				evict(eldest.getKey(), eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Squares of one chunk
+	 */
+	private static final class Chunk {
+
+		//Bit j of mines[i] is set if square (i, j) of the chunk has a mine
+		final long[] mines = new long[SIZE];
+
+		//REVEALED and MARKED bits of every square, at i*SIZE+j, null if nothing was done to the chunk
+		byte[] state;
+
+		//Whether the state has changed since the chunk was made or read from the spill file
+		boolean dirty = false;
+	}
+
+	/**
+	 * @return seed of the board
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * @return probability of a square having a mine
+	 */
+	public double getDensity() {
+		return density;
+	}
+
+	/**
+	 * @return true if the user has stepped on a mine
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * @return number of squares revealed so far
+	 */
+	public long getRevealed() {
+		return revealed;
+	}
+
+	/**
+	 * @return number of chunks in memory
+	 */
+	public int getLoadedChunks() {
+		return chunks.size();
+	}
+
+	/**
+	 * @return number of chunks in the spill file
+	 */
+	public int getSpilledChunks() {
+		return slots.size();
+	}
+
+	/**
+	 * @param x, row index
+	 * @param y, column index
+	 * @return boolean, true if the square is hidden from the user
+	 */
+	public boolean isUnrevealed(int x, int y) {
+		return (state(x, y) & MinesweeperBoard.REVEALED) == 0;
+	}
+
+	/**
+	 * @param x, row index
+	 * @param y, column index
+	 * @return boolean, true if marked as a mine by the user
+	 */
+	public boolean isMarked(int x, int y) {
+		return (state(x, y) & MinesweeperBoard.MARKED) != 0;
+	}
+
+	/**
+	 * Same as MinesweeperBoard.getNum(), for a square that is revealed
+	 * @param x, row index
+	 * @param y, column index
+	 * @return value of a square
+	 */
+	public int getNum(int x, int y) {
+		if (isUnrevealed(x, y))
+			throw new RuntimeException("Illegal attempt to get number!");
+		return getValue(x, y);
+	}
+
+	/**
+	 * Get the value of a square whether or not it is revealed. Should NOT be used by the
+	 * 		algorithm.
+	 * @param x, row index
+	 * @param y, column index
+	 * @return value of a square, -1 if the square is a mine
+	 */
+	public int getValue(int x, int y) {
+		return hasMine(x, y) ? -1 : minesNearSelf(x, y);
+	}
+
+	/**
+	 * Count the mines near a square, which may be in up to 4 chunks.
+	 * @param x, row index
+	 * @param y, column index
+	 * @return int, amount of mines near it
+	 */
+	public int minesNearSelf(int x, int y) {
+		int counter = 0;
+		for (int i=-1;i<=1;i++)
+			for (int j=-1;j<=1;j++)
+				if ((i != 0 || j != 0) && hasMine(x+i, y+j))
+					counter++;
+		return counter;
+	}
+
+	/**
+	 * Called when user left clicks on a square. If the square is a mine, the user loses.
+	 * 		If it is empty, all squares near it are revealed as well, across chunks.
+	 *
+	 * @param x, row index
+	 * @param y, column index
+	 * @return number of squares revealed by this move
+	 */
+	public long reveal(int x, int y) {
+		if (finished || !isUnrevealed(x, y))
+			return 0;
+		long before = revealed;
+		setRevealed(x, y);
+		if (hasMine(x, y)) {
+			finished = true;
+			return revealed - before;
+		}
+		if (minesNearSelf(x, y) == 0)
+			revealAllNear(x, y);
+		return revealed - before;
+	}
+
+	/**
+	 * Reveal the blank at (0, 0), which is never near a mine
+	 * @return number of squares revealed
+	 */
+	public long revealBeginning() {
+		return reveal(0, 0);
+	}
+
+	/**
+	 * Called when user right clicks on a square. If the square is hidden, it is marked
+	 * 		or unmarked as a mine, otherwise it is chorded.
+	 *
+	 * @param x, row index
+	 * @param y, column index
+	 */
+	public void rightClick(int x, int y) {
+		if (isUnrevealed(x, y))
+			flag(x, y);
+		else
+			chord(x, y);
+	}
+
+	/**
+	 * Mark or unmark a hidden square as a mine.
+	 *
+	 * @param x, row index
+	 * @param y, column index
+	 */
+	public void flag(int x, int y) {
+		if (finished || !isUnrevealed(x, y))
+			return;
+		setState(x, y, state(x, y) ^ MinesweeperBoard.MARKED);
+	}
+
+	/**
+	 * Reveal every square near a revealed number that is not marked as a mine, provided
+	 * 		that the number of marked squares near it is equal to the number.
+	 *
+	 * @param x, row index
+	 * @param y, column index
+	 * @return number of squares revealed by this move
+	 */
+	public long chord(int x, int y) {
+		if (finished || isUnrevealed(x, y))
+			return 0;
+		int counter = 0;
+		for (int i=-1;i<=1;i++)
+			for (int j=-1;j<=1;j++)
+				if ((i != 0 || j != 0) && isMarked(x+i, y+j))
+					counter++;
+		if (counter != minesNearSelf(x, y))
+			return 0;
+		long before = revealed;
+		boolean failed = false;
+		for (int i=-1;i<=1;i++) {
+			for (int j=-1;j<=1;j++) {
+				int a = x+i;
+				int b = y+j;
+				if ((state(a, b) & (MinesweeperBoard.REVEALED | MinesweeperBoard.MARKED)) != 0)
+					continue;
+				setRevealed(a, b);
+				if (hasMine(a, b))
+					failed = true;
+				else if (minesNearSelf(a, b) == 0)
+					revealAllNear(a, b);
+			}
+		}
+		if (failed)
+			finished = true;
+		return revealed - before;
+	}
+
+	/**
+	 * Copy a rectangle of the board into a MinesweeperBoard, so that MinesweeperAlg can
+	 * 		solve it. Square (i, j) of the window is square (x0+i, y0+j) of this board.
+	 *
+	 * The squares on the edge of the window are always hidden in it, since the numbers
+	 * 		there have squares near them that are outside the window. Every revealed number
+	 * 		that is left has all its squares in the window, so what MinesweeperAlg.update()
+	 * 		finds is true of this board as well. The number of mines of the window is the
+	 * 		number of mines in it, which the exact probabilities use, so only the ones found
+	 * 		without it should be trusted.
+	 *
+	 * @param x0, row index of the top left square
+	 * @param y0, column index of the top left square
+	 * @param rows, number of rows, at least 3
+	 * @param cols, number of columns, at least 3
+	 * @return MinesweeperBoard
+	 */
+	public MinesweeperBoard window(int x0, int y0, int rows, int cols) {
+		if (rows < 3 || cols < 3 || (long)rows * cols > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Window of "+rows+"x"+cols+" is not allowed!");
+		byte[] cells = new byte[rows * cols];
+		int mines = 0;
+		for (int i=0;i<rows;i++) {
+			for (int j=0;j<cols;j++) {
+				int x = x0+i;
+				int y = y0+j;
+				int cell = hasMine(x, y) ? MinesweeperBoard.MINE : minesNearSelf(x, y);
+				if (cell == MinesweeperBoard.MINE)
+					mines++;
+				int st = state(x, y);
+				if (i == 0 || j == 0 || i == rows-1 || j == cols-1)
+					st &= ~MinesweeperBoard.REVEALED;
+				cells[i*cols+j] = (byte)(cell | st);
+			}
+		}
+		return new MinesweeperBoard(rows, cols, mines, seed, ByteBuffer.wrap(cells), true, finished, false);
+	}
+
+	/**
+	 * Close the spill file, and delete it if it was a temporary one
+	 */
+	@Override
+	public void close() throws IOException {
+		if (spill != null)
+			spill.close();
+		spill = null;
+		if (temporary)
+			Files.deleteIfExists(spillPath);
+	}
+
+	/**
+	 * Helper method to reveal a single square
+	 */
+	private void setRevealed(int x, int y) {
+		setState(x, y, state(x, y) | MinesweeperBoard.REVEALED);
+		revealed++;
+	}
+
+	/**
+	 * Helper method that reveals all squares near a blank (x, y), and near every blank
+	 * 		that is revealed on the way, with the squares to look at in a stack on the heap
+	 * 		like MinesweeperBoard.revealAllNear().
+	 */
+	private void revealAllNear(int x, int y) {
+		fillSize = 0;
+		push(x, y);
+		while (fillSize > 0) {
+			long p = fill[--fillSize];
+			int px = (int)(p >> 32);
+			int py = (int)p;
+			for (int i=-1;i<=1;i++) {
+				for (int j=-1;j<=1;j++) {
+					int a = px+i;
+					int b = py+j;
+					if (!isUnrevealed(a, b))
+						continue;
+					setRevealed(a, b);
+					if (!hasMine(a, b) && minesNearSelf(a, b) == 0)
+						push(a, b);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Helper method to put a square on the stack of the flood fill
+	 */
+	private void push(int x, int y) {
+		if (fillSize == fill.length)
+			fill = Arrays.copyOf(fill, 2 * fill.length);
+		fill[fillSize++] = (long)x << 32 | (y & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Helper method to check whether a square has a mine
+	 */
+	private boolean hasMine(int x, int y) {
+		return (chunk(x, y).mines[x & MASK] >>> (y & MASK) & 1) != 0;
+	}
+
+	/**
+	 * Helper method to read the REVEALED and MARKED bits of a square
+	 */
+	private int state(int x, int y) {
+		byte[] st = chunk(x, y).state;
+		return st == null ? 0 : st[(x & MASK) << SHIFT | (y & MASK)];
+	}
+
+	/**
+	 * Helper method to change the REVEALED and MARKED bits of a square
+	 */
+	private void setState(int x, int y, int value) {
+		Chunk c = chunk(x, y);
+		if (c.state == null)
+			c.state = new byte[SIZE * SIZE];
+		c.state[(x & MASK) << SHIFT | (y & MASK)] = (byte)value;
+		c.dirty = true;
+	}
+
+	/**
+	 * Helper method to get the chunk of a square, making it or reading it back from the
+	 * 		spill file if it is not in memory
+	 */
+	private Chunk chunk(int x, int y) {
+		int cx = x >> SHIFT;
+		int cy = y >> SHIFT;
+		long key = (long)cx << 32 | (cy & 0xFFFFFFFFL);
+		if (last != null && key == lastKey)
+			return last;
+		Chunk c = chunks.get(key);
+		if (c == null) {
+			c = make(cx, cy);
+			Long slot = slots.get(key);
+			if (slot != null)
+				c.state = read(slot);
+			chunks.put(key, c);
+		}
+		lastKey = key;
+		last = c;
+		return c;
+	}
+
+	/**
+	 * Helper method to place the mines of a chunk from the hash of the seed and its position
+	 * @param cx, row index of the chunk
+	 * @param cy, column index of the chunk
+	 * @return Chunk
+	 */
+	private Chunk make(int cx, int cy) {
+		Chunk c = new Chunk();
+		SplittableRandom rng = new SplittableRandom(hash(seed, cx, cy));
+		for (int i=0;i<SIZE;i++) {
+			long row = 0;
+			for (int j=0;j<SIZE;j++)
+				if (rng.nextDouble() < density)
+					row |= 1L << j;
+			c.mines[i] = row;
+		}
+
+		//No mines around (0, 0), so that revealBeginning() opens a blank
+		for (int x=-1;x<=1;x++)
+			for (int y=-1;y<=1;y++)
+				if (x >> SHIFT == cx && y >> SHIFT == cy)
+					c.mines[x & MASK] &= ~(1L << (y & MASK));
+		return c;
+	}
+
+	/**
+	 * Helper method to mix the seed and the position of a chunk into a seed for the chunk
+	 */
+	private static long hash(long seed, int cx, int cy) {
+		long z = seed ^ ((long)cx << 32 | (cy & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Helper method called when a chunk falls out of the cache, writing it to its slot of
+	 * 		the spill file if it has changed since it was made or read
+	 */
+	private void evict(long key, Chunk c) {
+		if (last == c)
+			last = null;
+		if (!c.dirty)
+			return;
+		try {
+			Long slot = slots.get(key);
+			if (slot == null) {
+				slot = (long)slots.size();
+				slots.put(key, slot);
+			}
+			ByteBuffer buf = ByteBuffer.wrap(c.state);
+			long at = slot * SIZE * SIZE;
+			while (buf.hasRemaining())
+				at += spill().write(buf, at);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Helper method to read the state of a chunk back from its slot of the spill file
+	 */
+	private byte[] read(long slot) {
+		byte[] st = new byte[SIZE * SIZE];
+		ByteBuffer buf = ByteBuffer.wrap(st);
+		long at = slot * SIZE * SIZE;
+		try {
+			while (buf.hasRemaining()) {
+				int n = spill().read(buf, at);
+				if (n < 0)
+					throw new IOException("Spill file is cut off!");
+				at += n;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return st;
+	}
+
+	/**
+	 * Helper method to open the spill file the first time it is needed
+	 */
+	private FileChannel spill() throws IOException {
+		if (spill == null)
+			spill = FileChannel.open(spillPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+		return spill;
+	}
+}
@@ -0,0 +1,304 @@
+
+import javafx.css.PseudoClass;
+import javafx.scene.control.Label;
+import javafx.scene.layout.Pane;
+
+/**
+ * JavaFX view of a MinesweeperBoard that uses one Label for every square.
+ *
+ * The looks of the squares come from minesweeper.css, which has to be added to the scene.
+ * 		The state of a square is shown with the pseudo classes :revealed, :marked and
+ * 		:finished, and the colours of the algorithm with a style class per colour, so that
+ * 		no style strings have to be built or parsed when the board changes. Only squares
+ * 		that the board says have changed, or whose colour from the algorithm has changed,
+ * 		are restyled, so the work per click depends on the change and not on the board size.
+ *
+ * @author Haoxian (Roger) Hu
+ */
+public final class MinesweeperLabelView implements MinesweeperView {
+
+	//Name of the stylesheet with the looks of the squares
+	public static final String STYLESHEET = "minesweeper.css";
+
+	private static final PseudoClass REVEALED = PseudoClass.getPseudoClass("revealed");
+	private static final PseudoClass MARKED = PseudoClass.getPseudoClass("marked");
+	private static final PseudoClass FINISHED = PseudoClass.getPseudoClass("finished");
+
+	//Style classes for the colours of the algorithm, at the indexes given by MinesweeperView.riskOf()
+	private static final String[] RISK_CLASSES = new String[3 + RISK_LEVELS];
+	static {
+		RISK_CLASSES[1] = "safe";
+		RISK_CLASSES[2] = "certain-mine";
+		for (int i=0;i<RISK_LEVELS;i++)
+			RISK_CLASSES[3+i] = "risk-" + i;
+	}
+
+	//Bits of the looks of a square as stored in shown. The colour of the algorithm is stored above these.
+	private static final int SHOWN_REVEALED = 1;
+	private static final int SHOWN_MARKED = 2;
+	private static final int SHOWN_FINISHED = 4;
+	private static final int RISK_SHIFT = 3;
+
+	//Board that is shown by this view
+	private MinesweeperBoard board;
+
+	//Information on the board itself
+	private int ROWS;
+	private int COLS;
+
+	//The actual labels containing numbers or X or E
+	private Label[][] lbls;
+
+	//The looks each label currently has, and the colour the algorithm last gave each square
+	private byte[] shown;
+	private byte[] risk;
+
+	//Positions, stored as row*COLS+column, that may have to be restyled, and that have a colour from the algorithm
+	private IntList dirty = new IntList();
+	private IntList coloured = new IntList();
+
+	//Whether every square has already been restyled for the end of the game
+	private boolean finishedShown = false;
+
+	/**
+	 * Constructor
+	 *
+	 * @param bboard, board to show
+	 */
+	public MinesweeperLabelView(MinesweeperBoard bboard) {
+		board = bboard;
+		ROWS = board.getRows();
+		COLS = board.getCols();
+		lbls = new Label[ROWS][COLS];
+		shown = new byte[ROWS * COLS];
+		risk = new byte[ROWS * COLS];
+		initLabels();
+		board.addListener(this);
+	}
+
+	/**
+	 * Allows the main class to get access to all the labels this class contains.
+	 * @return Label[][]
+	 */
+	public Label[][] getLabels() {
+		return lbls;
+	}
+
+	@Override
+	public void addTo(Pane pane) {
+		for (int i=0;i<lbls.length;i++)
+			pane.getChildren().addAll(lbls[i]);
+	}
+
+	@Override
+	public double getWidth() {
+		return 30*COLS;
+	}
+
+	@Override
+	public double getHeight() {
+		return 30*ROWS;
+	}
+
+	@Override
+	public int[] cellAt(double sceneX, double sceneY) {
+		int x = (int)Math.floor((sceneX-25)/30);
+		int y = (int)Math.floor((sceneY-25)/30);
+		if (y >= ROWS || y < 0 || x >= COLS || x < 0)
+			return null;
+		return new int[] {y, x};
+	}
+
+	/**
+	 * Set up labels and use the setId() method to keep access to original text.
+	 */
+	private void initLabels() {
+		for (int i=0;i<ROWS;i++) {
+			for (int j=0;j<COLS;j++) {
+				Label lb = new Label();
+				lb.getStyleClass().add("cell");
+				lb.setMaxSize(30, 30);
+				lb.setMinSize(30, 30);
+				lb.setLayoutX(25 + 30*j);
+				lb.setLayoutY(25 + 30*i);
+				lbls[i][j] = lb;
+				initLabel(i, j);
+			}
+		}
+	}
+
+	/**
+	 * Set up the text and looks of a single label from the value of its square.
+	 * @param x, row index
+	 * @param y, column index
+	 */
+	private void initLabel(int x, int y) {
+		Label lb = lbls[x][y];
+		int value = board.getValue(x, y);
+		lb.getStyleClass().setAll("cell");
+		if (value < 0) {
+			lb.setId("X");
+			lb.getStyleClass().add("mine-text");
+		} else if (value == 0) {
+			lb.setId(" ");
+			lb.getStyleClass().add("blank-text");
+		} else {
+			lb.setId(String.valueOf(value));
+		}
+		lb.pseudoClassStateChanged(REVEALED, false);
+		lb.pseudoClassStateChanged(MARKED, false);
+		lb.pseudoClassStateChanged(FINISHED, false);
+		shown[x*COLS+y] = 0;
+		risk[x*COLS+y] = 0;
+		setVisible(lb, false);
+	}
+
+	/**
+	 * Called when the algorithm has a result, or when the user stops the algorithm.
+	 *
+	 * If values is not null, the data from the algorithm is applied and the background
+	 * 		color of squares that it has data on will change. If a square is for sure a mine,
+	 * 		the color will be black; if it is definitely not a mine, the color will be blue.
+	 * 		If a square is guaranteed to be safe or dangerous, the color will be a spectrum of
+	 * 			green to red, with green being safer than red. This color is based on a probability
+	 * 			determined by the algorithm of a square being able to contain a mine
+	 *
+	 * @param sfn the main class
+	 * @param values, result of the algorithm, or null to remove the colours
+	 */
+	@Override
+	public void showProbability(Minesweeper sfn, double[][] values) {
+		for (int k=0;k<coloured.size();k++) {
+			risk[coloured.get(k)] = 0;
+			dirty.add(coloured.get(k));
+		}
+		coloured.clear();
+
+		if (values != null) {
+			for (int i=0;i<ROWS;i++) {
+				for (int j=0;j<COLS;j++) {
+					int r = MinesweeperView.riskOf(values[i][j], board.isMarked(i, j));
+					if (r == 0)
+						continue;
+					risk[i*COLS+j] = (byte)r;
+					coloured.add(i*COLS+j);
+					dirty.add(i*COLS+j);
+				}
+			}
+		}
+		updateStatus(sfn);
+	}
+
+	/**
+	 * Called after a user input, to show the squares the board says have changed.
+	 *
+	 * @param sfn the main class
+	 */
+	@Override
+	public void updateStatus(Minesweeper sfn) {
+		long start = MinesweeperMetrics.start();
+		if (board.isFinished()) {
+			sfn.finished(board.isWon());
+			if (!finishedShown) {
+				finishedShown = true;
+				for (int i=0;i<ROWS;i++) {
+					for (int j=0;j<COLS;j++) {
+						setVisible(lbls[i][j], true);
+						dirty.add(i*COLS+j);
+					}
+				}
+			}
+		}
+
+		int[] pos = sfn.getPosition();
+		int restyled = 0;
+		for (int k=0;k<dirty.size();k++)
+			if (restyle(dirty.get(k), pos))
+				restyled++;
+		dirty.clear();
+		MinesweeperMetrics.restyled(start, restyled);
+	}
+
+	/**
+	 * Give a single label the looks its square should have, if it does not have them
+	 * 		already. Once the game is over, every square except the one the user is on
+	 * 		loses its colours and marks.
+	 * @param n, position stored as row*COLS+column
+	 * @param pos, current position of the user
+	 * @return whether the label was changed
+	 */
+	private boolean restyle(int n, int[] pos) {
+		int x = n / COLS;
+		int y = n % COLS;
+		int look;
+		if (finishedShown && !(x == pos[0] && y == pos[1]))
+			look = SHOWN_FINISHED | (board.isUnrevealed(x, y) ? 0 : SHOWN_REVEALED);
+		else
+			look = (board.isUnrevealed(x, y) ? (board.isMarked(x, y) ? SHOWN_MARKED : 0) : SHOWN_REVEALED)
+					| risk[n] << RISK_SHIFT;
+		int old = shown[n] & 0xFF;
+		if (look == old)
+			return false;
+		Label lb = lbls[x][y];
+		if (((look ^ old) & SHOWN_REVEALED) != 0)
+			lb.pseudoClassStateChanged(REVEALED, (look & SHOWN_REVEALED) != 0);
+		if (((look ^ old) & SHOWN_MARKED) != 0)
+			lb.pseudoClassStateChanged(MARKED, (look & SHOWN_MARKED) != 0);
+		if (((look ^ old) & SHOWN_FINISHED) != 0)
+			lb.pseudoClassStateChanged(FINISHED, (look & SHOWN_FINISHED) != 0);
+		int oldRisk = old >> RISK_SHIFT;
+		int newRisk = look >> RISK_SHIFT;
+		if (oldRisk != newRisk) {
+			if (oldRisk != 0)
+				lb.getStyleClass().remove(RISK_CLASSES[oldRisk]);
+			if (newRisk != 0)
+				lb.getStyleClass().add(RISK_CLASSES[newRisk]);
+		}
+		shown[n] = (byte)look;
+		return true;
+	}
+
+	/**
+	 * Show the text of a square once the board reveals it, without the colour the
+	 * 		algorithm gave it while it was hidden
+	 */
+	@Override
+	public void cellRevealed(int x, int y) {
+		setVisible(lbls[x][y], true);
+		risk[x*COLS+y] = 0;
+		dirty.add(x*COLS+y);
+	}
+
+	/**
+	 * Restyle a square once the user marks or unmarks it
+	 */
+	@Override
+	public void cellMarked(int x, int y, boolean marked) {
+		dirty.add(x*COLS+y);
+	}
+
+	/**
+	 * Hide every label again, and pick up the new numbers if the board has new mines
+	 */
+	@Override
+	public void boardReset() {
+		finishedShown = false;
+		coloured.clear();
+		dirty.clear();
+		for (int i=0;i<ROWS;i++)
+			for (int j=0;j<COLS;j++)
+				initLabel(i, j);
+	}
+
+	/**
+	 * Helper method to turn a label to be "visible"
+	 * @param l
+	 * @param b
+	 */
+	private void setVisible(Label l, boolean b) {
+		if (b)
+			l.setText(l.getId());
+		else
+			l.setText("");
+	}
+}
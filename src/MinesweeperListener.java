@@ -0,0 +1,38 @@
+
+/**
+ * Interface for classes that want to be told when a MinesweeperBoard changes, such as the
+ * 		JavaFX view of the board. All methods do nothing by default so that a class only
+ * 		needs to override the events it cares about.
+ *
+ * @author Haoxian (Roger) Hu
+ */
+public interface MinesweeperListener {
+
+	/**
+	 * Called when a square is revealed, either by a click, by a chord, by the flood fill
+	 * 		of an empty square or by a cheat.
+	 * @param x, row index
+	 * @param y, column index
+	 */
+	default void cellRevealed(int x, int y) {}
+
+	/**
+	 * Called when the user marks or unmarks a square as a mine.
+	 * @param x, row index
+	 * @param y, column index
+	 * @param marked, true if the square is now marked
+	 */
+	default void cellMarked(int x, int y, boolean marked) {}
+
+	/**
+	 * Called once when the user either wins or steps on a mine.
+	 * @param won, true if user won and false if user lost
+	 */
+	default void gameFinished(boolean won) {}
+
+	/**
+	 * Called when every square is hidden again, either because the game is restarted or
+	 * 		because a new board is generated.
+	 */
+	default void boardReset() {}
+}
@@ -0,0 +1,397 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Counters and timers of the board, the algorithm and the views, to see where the time goes.
+ *
+ * Everything is off until setEnabled(true) is called, or the program is started with
+ * 		-Dminesweeper.metrics=true. While it is off, every method here returns after reading
+ * 		one volatile field, and the callers only read the clock if start() says it is on,
+ * 		so nothing is allocated and no time is measured. While it is on, the counts are
+ * 		added to LongAdders, which threads can add to at the same time without waiting for
+ * 		each other, and every operation is also sent to Java Flight Recorder as an event
+ * 		of the category Minesweeper, if a recording is running.
+ *
+ * The counts can be read with the getters of the one instance, through JMX once register()
+ * 		has been called, or with print().
+ *
+ * @author Haoxian (Roger) Hu
+ */
+public final class MinesweeperMetrics implements MinesweeperMetricsMBean {
+
+	//The one instance, which is what JMX sees
+	private static final MinesweeperMetrics INSTANCE = new MinesweeperMetrics();
+
+	//Whether anything is counted
+	private static volatile boolean enabled = Boolean.getBoolean("minesweeper.metrics");
+
+	//Boards made by MinesweeperBoard.init(), and the time it took
+	private static final LongAdder boardsGenerated = new LongAdder();
+	private static final LongAdder generationNanos = new LongAdder();
+
+	//Flood fills of MinesweeperBoard, and the squares they revealed
+	private static final LongAdder floodFills = new LongAdder();
+	private static final LongAdder cellsOpened = new LongAdder();
+
+	//Calls of MinesweeperAlg.update(), passes of lookThroughNumbers() until nothing changes, numbers it checked, and the time it took
+	private static final LongAdder solverUpdates = new LongAdder();
+	private static final LongAdder solverPasses = new LongAdder();
+	private static final LongAdder numbersChecked = new LongAdder();
+	private static final LongAdder updateNanos = new LongAdder();
+
+	//Calls of MinesweeperAlg.calculateProbability() and the time it took
+	private static final LongAdder probabilityCalls = new LongAdder();
+	private static final LongAdder probabilityNanos = new LongAdder();
+
+	//Calls of MinesweeperProbability.solve(), the assignments they tried, and the last frontier
+	private static final LongAdder exactCalls = new LongAdder();
+	private static final LongAdder nodesVisited = new LongAdder();
+	private static volatile int lastFrontierSize;
+	private static volatile int lastComponents;
+
+	//Calls of MinesweeperView.updateStatus(), and the squares restyled or drawn again
+	private static final LongAdder viewUpdates = new LongAdder();
+	private static final LongAdder restyles = new LongAdder();
+
+	/**
+	 * Constructor, only for INSTANCE
+	 */
+	private MinesweeperMetrics() {
+	}
+
+	/**
+	 * @return the one instance, whose getters read the counts
+	 */
+	public static MinesweeperMetrics get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Make the counts readable through JMX as minesweeper:type=Metrics. Does nothing if
+	 * 		it has been done already.
+	 */
+	public static void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("minesweeper:type=Metrics");
+			if (!server.isRegistered(name))
+				server.registerMBean(INSTANCE, name);
+		} catch (JMException e) {
+			throw new IllegalStateException("Could not register the metrics!", e);
+		}
+	}
+
+	/**
+	 * @return System.nanoTime() if metrics are on, 0 otherwise, to give to the method that
+	 * 		records the operation once it is done
+	 */
+	public static long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Record a board made by MinesweeperBoard.init()
+	 * @param start, what start() returned before
+	 * @param rows
+	 * @param cols
+	 * @param mines
+	 */
+	static void generated(long start, int rows, int cols, int mines) {
+		if (!enabled || start == 0)
+			return;
+		long nanos = System.nanoTime() - start;
+		boardsGenerated.increment();
+		generationNanos.add(nanos);
+		GenerateEvent e = new GenerateEvent();
+		if (e.shouldCommit()) {
+			e.rows = rows;
+			e.cols = cols;
+			e.mines = mines;
+			e.time = nanos;
+			e.commit();
+		}
+	}
+
+	/**
+	 * Record a flood fill of MinesweeperBoard
+	 * @param cells, number of squares it revealed
+	 */
+	static void flooded(int cells) {
+		if (!enabled)
+			return;
+		floodFills.increment();
+		cellsOpened.add(cells);
+	}
+
+	/**
+	 * Record a call of MinesweeperAlg.update()
+	 * @param start, what start() returned before
+	 * @param passes, times lookThroughNumbers() ran
+	 * @param numbers, revealed numbers it checked
+	 */
+	static void updated(long start, int passes, int numbers) {
+		if (!enabled || start == 0)
+			return;
+		long nanos = System.nanoTime() - start;
+		solverUpdates.increment();
+		solverPasses.add(passes);
+		numbersChecked.add(numbers);
+		updateNanos.add(nanos);
+		UpdateEvent e = new UpdateEvent();
+		if (e.shouldCommit()) {
+			e.passes = passes;
+			e.numbers = numbers;
+			e.time = nanos;
+			e.commit();
+		}
+	}
+
+	/**
+	 * Record a call of MinesweeperAlg.calculateProbability()
+	 * @param start, what start() returned before
+	 */
+	static void calculated(long start) {
+		if (!enabled || start == 0)
+			return;
+		probabilityCalls.increment();
+		probabilityNanos.add(System.nanoTime() - start);
+	}
+
+	/**
+	 * Record a call of MinesweeperProbability.solve()
+	 * @param start, what start() returned before
+	 * @param frontier, squares on the frontier
+	 * @param components, components of the frontier
+	 * @param nodes, assignments tried
+	 */
+	static void solved(long start, int frontier, int components, long nodes) {
+		if (!enabled || start == 0)
+			return;
+		long nanos = System.nanoTime() - start;
+		exactCalls.increment();
+		nodesVisited.add(nodes);
+		lastFrontierSize = frontier;
+		lastComponents = components;
+		ProbabilityEvent e = new ProbabilityEvent();
+		if (e.shouldCommit()) {
+			e.frontier = frontier;
+			e.components = components;
+			e.nodes = nodes;
+			e.time = nanos;
+			e.commit();
+		}
+	}
+
+	/**
+	 * Record a call of MinesweeperView.updateStatus()
+	 * @param start, what start() returned before
+	 * @param n, squares restyled or drawn again
+	 */
+	static void restyled(long start, int n) {
+		if (!enabled || start == 0)
+			return;
+		long nanos = System.nanoTime() - start;
+		viewUpdates.increment();
+		restyles.add(n);
+		ViewUpdateEvent e = new ViewUpdateEvent();
+		if (e.shouldCommit()) {
+			e.restyles = n;
+			e.time = nanos;
+			e.commit();
+		}
+	}
+
+	/**
+	 * Print every count, for example at the end of a run of the simulator
+	 */
+	public static void print() {
+		MinesweeperMetrics m = INSTANCE;
+		System.out.println("metrics:");
+		System.out.println(String.format("  boards generated  %d in %.1f ms", m.getBoardsGenerated(), m.getGenerationNanos() / 1e6));
+		System.out.println(String.format("  flood fills       %d, %d squares opened", m.getFloodFills(), m.getCellsOpened()));
+		System.out.println(String.format("  solver updates    %d, %d passes, %d numbers checked, %.1f ms",
+				m.getSolverUpdates(), m.getSolverPasses(), m.getNumbersChecked(), m.getUpdateNanos() / 1e6));
+		System.out.println(String.format("  probabilities     %d in %.1f ms, %d exact, %d nodes",
+				m.getProbabilityCalls(), m.getProbabilityNanos() / 1e6, m.getExactCalls(), m.getNodesVisited()));
+		System.out.println(String.format("  view updates      %d, %d restyles", m.getViewUpdates(), m.getRestyles()));
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean b) {
+		enabled = b;
+	}
+
+	/**
+	 * Set every count back to 0
+	 */
+	@Override
+	public void reset() {
+		for (LongAdder a : new LongAdder[] {boardsGenerated, generationNanos, floodFills, cellsOpened,
+				solverUpdates, solverPasses, numbersChecked, updateNanos, probabilityCalls, probabilityNanos,
+				exactCalls, nodesVisited, viewUpdates, restyles})
+			a.reset();
+		lastFrontierSize = 0;
+		lastComponents = 0;
+	}
+
+	@Override
+	public long getBoardsGenerated() {
+		return boardsGenerated.sum();
+	}
+
+	@Override
+	public long getGenerationNanos() {
+		return generationNanos.sum();
+	}
+
+	@Override
+	public long getFloodFills() {
+		return floodFills.sum();
+	}
+
+	@Override
+	public long getCellsOpened() {
+		return cellsOpened.sum();
+	}
+
+	@Override
+	public long getSolverUpdates() {
+		return solverUpdates.sum();
+	}
+
+	@Override
+	public long getSolverPasses() {
+		return solverPasses.sum();
+	}
+
+	@Override
+	public long getNumbersChecked() {
+		return numbersChecked.sum();
+	}
+
+	@Override
+	public long getUpdateNanos() {
+		return updateNanos.sum();
+	}
+
+	@Override
+	public long getProbabilityCalls() {
+		return probabilityCalls.sum();
+	}
+
+	@Override
+	public long getProbabilityNanos() {
+		return probabilityNanos.sum();
+	}
+
+	@Override
+	public long getExactCalls() {
+		return exactCalls.sum();
+	}
+
+	@Override
+	public long getNodesVisited() {
+		return nodesVisited.sum();
+	}
+
+	@Override
+	public int getLastFrontierSize() {
+		return lastFrontierSize;
+	}
+
+	@Override
+	public int getLastComponents() {
+		return lastComponents;
+	}
+
+	@Override
+	public long getViewUpdates() {
+		return viewUpdates.sum();
+	}
+
+	@Override
+	public long getRestyles() {
+		return restyles.sum();
+	}
+
+	/**
+	 * Flight Recorder event for a board made by MinesweeperBoard.init()
+	 */
+	@Name("minesweeper.Generate")
+	@Label("Generate Board")
+	@Category("Minesweeper")
+	static final class GenerateEvent extends Event {
+		@Label("Rows")
+		int rows;
+		@Label("Columns")
+		int cols;
+		@Label("Mines")
+		int mines;
+		@Label("Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long time;
+	}
+
+	/**
+	 * Flight Recorder event for a call of MinesweeperAlg.update()
+	 */
+	@Name("minesweeper.Update")
+	@Label("Solver Update")
+	@Category("Minesweeper")
+	static final class UpdateEvent extends Event {
+		@Label("Passes")
+		int passes;
+		@Label("Numbers Checked")
+		int numbers;
+		@Label("Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long time;
+	}
+
+	/**
+	 * Flight Recorder event for a call of MinesweeperProbability.solve()
+	 */
+	@Name("minesweeper.Probability")
+	@Label("Exact Probability")
+	@Category("Minesweeper")
+	static final class ProbabilityEvent extends Event {
+		@Label("Frontier Size")
+		int frontier;
+		@Label("Components")
+		int components;
+		@Label("Nodes Visited")
+		long nodes;
+		@Label("Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long time;
+	}
+
+	/**
+	 * Flight Recorder event for a call of MinesweeperView.updateStatus()
+	 */
+	@Name("minesweeper.ViewUpdate")
+	@Label("View Update")
+	@Category("Minesweeper")
+	static final class ViewUpdateEvent extends Event {
+		@Label("Restyles")
+		int restyles;
+		@Label("Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long time;
+	}
+}
@@ -0,0 +1,46 @@
+/**
+ * What MinesweeperMetrics shows through JMX, under the name minesweeper:type=Metrics. Times
+ * 		are in nanoseconds, and every count is since the last reset().
+ *
+ * @author Haoxian (Roger) Hu
+ */
+public interface MinesweeperMetricsMBean {
+
+	public boolean isEnabled();
+
+	public void setEnabled(boolean b);
+
+	public void reset();
+
+	public long getBoardsGenerated();
+
+	public long getGenerationNanos();
+
+	public long getFloodFills();
+
+	public long getCellsOpened();
+
+	public long getSolverUpdates();
+
+	public long getSolverPasses();
+
+	public long getNumbersChecked();
+
+	public long getUpdateNanos();
+
+	public long getProbabilityCalls();
+
+	public long getProbabilityNanos();
+
+	public long getExactCalls();
+
+	public long getNodesVisited();
+
+	public int getLastFrontierSize();
+
+	public int getLastComponents();
+
+	public long getViewUpdates();
+
+	public long getRestyles();
+}
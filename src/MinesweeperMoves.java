@@ -0,0 +1,209 @@
+/**
+ * A batch of moves to make on a MinesweeperBoard with one call of MinesweeperBoard.play(),
+ * 		for bots and scripts that know many moves at once, such as every square the
+ * 		algorithm found to be safe.
+ *
+ * The moves are made one after another, the same as calling reveal(), flag(), chord() or
+ * 		rightClick() for each of them, but whoever made them only has to show the board
+ * 		and run the algorithm once for the whole batch instead of once for every move.
+ * 		After play(), the batch holds what the moves did: the squares that changed, how
+ * 		many of the moves were made before the game was finished, and how it ended.
+ *
+ * 		MinesweeperMoves moves = new MinesweeperMoves(board);
+ * 		moves.reveal(3, 4);
+ * 		moves.flag(5, 5);
+ * 		board.play(moves);
+ * 		view.updateStatus(game);
+ *
+ * A batch can be cleared and used again, so a bot does not make a new one for every step.
+ *
+ * @author Haoxian (Roger) Hu
+ */
+public final class MinesweeperMoves {
+
+	//Kinds of moves
+	public static final int REVEAL = 0;
+	public static final int RIGHT_CLICK = 1;
+	public static final int FLAG = 2;
+	public static final int CHORD = 3;
+
+	//Size of the board the moves are for
+	private final int ROWS;
+	private final int COLS;
+
+	//Moves, as a kind and a position stored as row*COLS+column
+	private IntList kinds = new IntList();
+	private IntList positions = new IntList();
+
+	//Squares revealed, marked or unmarked by the last play(), stored as row*COLS+column
+	private IntList changed = new IntList();
+
+	//Moves made by the last play(), and the state of the game after it
+	private int applied = 0;
+	private boolean finished = false;
+	private boolean won = false;
+
+	/**
+	 * Constructor
+	 *
+	 * @param board, board the moves are for
+	 */
+	public MinesweeperMoves(MinesweeperBoard board) {
+		ROWS = board.getRows();
+		COLS = board.getCols();
+	}
+
+	/**
+	 * Add a left click
+	 * @param x, row index
+	 * @param y, column index
+	 */
+	public void reveal(int x, int y) {
+		add(REVEAL, x, y);
+	}
+
+	/**
+	 * Add a right click
+	 * @param x, row index
+	 * @param y, column index
+	 */
+	public void rightClick(int x, int y) {
+		add(RIGHT_CLICK, x, y);
+	}
+
+	/**
+	 * Add marking or unmarking a square
+	 * @param x, row index
+	 * @param y, column index
+	 */
+	public void flag(int x, int y) {
+		add(FLAG, x, y);
+	}
+
+	/**
+	 * Add a chord
+	 * @param x, row index
+	 * @param y, column index
+	 */
+	public void chord(int x, int y) {
+		add(CHORD, x, y);
+	}
+
+	/**
+	 * Remove every move and what the last play() did
+	 */
+	public void clear() {
+		kinds.clear();
+		positions.clear();
+		changed.clear();
+		applied = 0;
+		finished = false;
+		won = false;
+	}
+
+	/**
+	 * @return number of rows of the board the moves are for
+	 */
+	public int getRows() {
+		return ROWS;
+	}
+
+	/**
+	 * @return number of columns of the board the moves are for
+	 */
+	public int getCols() {
+		return COLS;
+	}
+
+	/**
+	 * @return number of moves in the batch
+	 */
+	public int size() {
+		return kinds.size();
+	}
+
+	/**
+	 * @param k, index of a move
+	 * @return kind of the move, REVEAL, RIGHT_CLICK, FLAG or CHORD
+	 */
+	public int getKind(int k) {
+		return kinds.get(k);
+	}
+
+	/**
+	 * @param k, index of a move
+	 * @return row index of the move
+	 */
+	public int getX(int k) {
+		return positions.get(k) / COLS;
+	}
+
+	/**
+	 * @param k, index of a move
+	 * @return column index of the move
+	 */
+	public int getY(int k) {
+		return positions.get(k) % COLS;
+	}
+
+	/**
+	 * @return IntList of positions, stored as row*COLS+column, of the squares the last
+	 * 		play() revealed, marked or unmarked, in the order they changed. A square that
+	 * 		was marked and unmarked again is in it twice. The list belongs to the batch.
+	 */
+	public IntList getChanged() {
+		return changed;
+	}
+
+	/**
+	 * @return number of moves, from the first, that the last play() made. The moves after
+	 * 		the one that finished the game are not made.
+	 */
+	public int getApplied() {
+		return applied;
+	}
+
+	/**
+	 * @return true if the game was finished after the last play()
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * @return true if the game was won after the last play()
+	 */
+	public boolean isWon() {
+		return won;
+	}
+
+	/**
+	 * Helper method for MinesweeperBoard.play() to start over with what the moves did
+	 */
+	void start() {
+		changed.clear();
+		applied = 0;
+	}
+
+	/**
+	 * Helper method for MinesweeperBoard.play() to store what the moves did
+	 * @param a, number of moves made
+	 * @param f, whether the game is finished
+	 * @param w, whether the game was won
+	 */
+	void done(int a, boolean f, boolean w) {
+		applied = a;
+		finished = f;
+		won = w;
+	}
+
+	/**
+	 * Helper method to add a move
+	 */
+	private void add(int kind, int x, int y) {
+		if (x < 0 || x >= ROWS || y < 0 || y >= COLS)
+			throw new IllegalArgumentException("Square ("+x+", "+y+") is not on the board!");
+		kinds.add(kind);
+		positions.add(x*COLS+y);
+	}
+}
@@ -0,0 +1,790 @@
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Calculates the exact probability of every non revealed square containing a mine, given
+ * 		the revealed numbers and the total number of mines.
+ *
+ * The non revealed squares next to revealed numbers (the frontier) are split into
+ * 		components, where two squares are in the same component if a number touches both.
+ * 		Components do not affect each other except through the total number of mines, so
+ * 		each one is solved on its own by trying every assignment of mines that agrees with
+ * 		its numbers, counting the solutions by how many mines they use. The components are
+ * 		then combined, weighting every total by the number of ways the remaining mines can
+ * 		be spread over the squares that touch no number, which is a binomial coefficient.
+ *
+ * A component gives the same counts as long as its squares and numbers stay the same, so
+ * 		the counts are remembered and only components that changed since the last call are
+ * 		solved again.
+ *
+ * If parallel is on, the components that have to be solved are solved at the same time on
+ * 		a ForkJoinPool, and a big component is split by trying both choices of a square on
+ * 		different threads, so that one huge component does not leave the other threads idle.
+ *
+ * @author Haoxian (Roger) Hu
+ */
+public final class MinesweeperProbability {
+
+	//Largest number of assignments tried in one call before giving up
+	private static final long MAX_NODES = 5000000;
+
+	//Board to solve
+	private MinesweeperBoard board;
+	private int ROWS;
+	private int COLS;
+
+	//Squares near every square
+	private Neighbours near;
+
+	//Variable index of every square, -1 if it is not on the frontier
+	private int[] varOf;
+
+	//Solved components of the last call, and of the current call
+	private HashMap<Key, Component> cache = new HashMap<Key, Component>();
+	private HashMap<Key, Component> used = new HashMap<Key, Component>();
+
+	//Assignments handed out at a time from nodesLeft to a search
+	private static final int NODE_CHUNK = 4096;
+
+	//Squares left in a component below which a search is not split any more
+	private static final int SPLIT_LEAF = 16;
+
+	//Assignments left to try in the current call, shared by every thread of the call
+	private final AtomicLong nodesLeft = new AtomicLong();
+
+	//Says when the current call has to stop early, read on every check
+	private BooleanSupplier cancelled = () -> false;
+
+	//Whether components are solved on the threads of pool, and how many times a search may be split in two
+	private boolean parallel = false;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+	private int splitLevels;
+
+	//Number of components and of assignments tried in the last call, for testing and benchmarks
+	private int lastComponents;
+	private long lastNodes;
+
+	/**
+	 * Constructor
+	 *
+	 * @param bboard, board to solve
+	 */
+	public MinesweeperProbability(MinesweeperBoard bboard) {
+		board = bboard;
+		ROWS = board.getRows();
+		COLS = board.getCols();
+		near = board.getNeighbours();
+		varOf = new int[ROWS * COLS];
+		Arrays.fill(varOf, -1);
+		setPool(pool);
+	}
+
+	/**
+	 * Forget every remembered component, for example when the board is reset.
+	 */
+	public void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * Choose whether components are solved at the same time on the threads of the pool.
+	 * 		A component with many squares is also split by trying both choices of a square
+	 * 		on different threads.
+	 *
+	 * @param b
+	 */
+	public void setParallel(boolean b) {
+		parallel = b;
+	}
+
+	/**
+	 * Make solve() give up as soon as it can, returning null, once a condition is true. The
+	 * 		condition is checked on every thread of the call, so it has to be cheap and safe
+	 * 		to read from any thread. Must be called on the thread that calls solve().
+	 *
+	 * @param c, condition to stop
+	 */
+	public void setCancelCheck(BooleanSupplier c) {
+		cancelled = c;
+	}
+
+	/**
+	 * Choose the pool used when parallel is on, the common pool by default.
+	 *
+	 * @param p
+	 */
+	public void setPool(ForkJoinPool p) {
+		pool = p;
+		//A few times more branches than threads, so that threads that finish early can steal work
+		splitLevels = 32 - Integer.numberOfLeadingZeros(p.getParallelism()) + 3;
+	}
+
+	public int getLastComponents() {
+		return lastComponents;
+	}
+
+	public long getLastNodes() {
+		return lastNodes;
+	}
+
+	/**
+	 * Calculate the probability of every square containing a mine.
+	 *
+	 * @param mineCertainty, squares the caller already knows are mines, at index row*COLS+column
+	 * @param cannotBeMine, squares the caller already knows are safe, at index row*COLS+column
+	 * @return double[][], probability of each square containing a mine, -1 for revealed squares.
+	 * 		Returns null if the frontier is too big to solve exactly, or if the numbers and
+	 * 		the number of mines disagree.
+	 */
+	public double[][] solve(boolean[] mineCertainty, boolean[] cannotBeMine) {
+		long started = MinesweeperMetrics.start();
+
+		/**
+		 * Find every revealed number with a non revealed square near it that is not solved
+		 * 		yet, and give every such square a variable index.
+		 */
+		IntList vars = new IntList();
+		IntList cons = new IntList();
+		IntList conStart = new IntList();
+		IntList conTarget = new IntList();
+		int knownMines = 0;
+		int hidden = 0;
+		for (int i=0;i<ROWS;i++) {
+			for (int j=0;j<COLS;j++) {
+				int p = i*COLS+j;
+				if (board.isUnrevealed(p)) {
+					hidden++;
+					if (mineCertainty[p])
+						knownMines++;
+					continue;
+				}
+				if (!board.isNumAndRevealed(p))
+					continue;
+				int target = board.getNum(p);
+				int start = cons.size();
+				for (int d : near.of(i, j)) {
+					int n = p+d;
+					if (!board.isUnrevealed(n)) continue;
+					if (mineCertainty[n]) {
+						target--;
+					} else if (!cannotBeMine[n]) {
+						if (varOf[n] < 0) {
+							varOf[n] = vars.size();
+							vars.add(n);
+						}
+						cons.add(varOf[n]);
+					}
+				}
+				if (cons.size() == start)
+					continue;
+				conStart.add(start);
+				conTarget.add(target);
+			}
+		}
+		conStart.add(cons.size());
+
+		try {
+			double[][] values = combine(vars, cons, conStart, conTarget, mineCertainty, cannotBeMine,
+					board.getMines() - knownMines, hidden - knownMines);
+			MinesweeperMetrics.solved(started, vars.size(), lastComponents, lastNodes);
+			return values;
+		} finally {
+			for (int k=0;k<vars.size();k++)
+				varOf[vars.get(k)] = -1;
+			HashMap<Key, Component> old = cache;
+			cache = used;
+			used = old;
+			used.clear();
+		}
+	}
+
+	/**
+	 * Split the frontier into components, solve each one, and combine them under the total
+	 * 		number of mines.
+	 */
+	private double[][] combine(IntList vars, IntList cons, IntList conStart, IntList conTarget,
+			boolean[] mineCertainty, boolean[] cannotBeMine, int minesLeft, int hiddenLeft) {
+		int nv = vars.size();
+		int nc = conTarget.size();
+		nodesLeft.set(MAX_NODES);
+
+		//Constraints of every variable, stored the same way as the variables of every constraint
+		int[] varConStart = new int[nv + 1];
+		for (int k=0;k<cons.size();k++)
+			varConStart[cons.get(k) + 1]++;
+		for (int v=0;v<nv;v++)
+			varConStart[v+1] += varConStart[v];
+		int[] varCons = new int[cons.size()];
+		int[] fillPos = Arrays.copyOf(varConStart, nv);
+		for (int c=0;c<nc;c++)
+			for (int k=conStart.get(c);k<conStart.get(c+1);k++)
+				varCons[fillPos[cons.get(k)]++] = c;
+
+		//Find the components with a breadth first search over variables and constraints
+		ArrayList<Component> comps = new ArrayList<Component>();
+		ArrayList<Problem> pending = new ArrayList<Problem>();
+		int[] compOf = new int[nv];
+		Arrays.fill(compOf, -1);
+		boolean[] conSeen = new boolean[nc];
+		for (int v0=0;v0<nv;v0++) {
+			if (compOf[v0] >= 0)
+				continue;
+			IntList compVars = new IntList();
+			IntList compCons = new IntList();
+			compOf[v0] = comps.size();
+			compVars.add(v0);
+			for (int head=0;head<compVars.size();head++) {
+				int v = compVars.get(head);
+				for (int k=varConStart[v];k<varConStart[v+1];k++) {
+					int c = varCons[k];
+					if (conSeen[c])
+						continue;
+					conSeen[c] = true;
+					compCons.add(c);
+					for (int q=conStart.get(c);q<conStart.get(c+1);q++) {
+						int u = cons.get(q);
+						if (compOf[u] < 0) {
+							compOf[u] = comps.size();
+							compVars.add(u);
+						}
+					}
+				}
+			}
+			comps.add(component(vars, cons, conStart, conTarget, compVars, compCons, pending));
+		}
+		boolean solved = enumerate(pending);
+		lastComponents = comps.size();
+		lastNodes = MAX_NODES - Math.max(0, nodesLeft.get());
+		if (!solved)
+			return null;
+
+		/**
+		 * Multiply the counts of the components together like polynomials in the number of
+		 * 		mines, from the front and from the back, so that the counts of all components
+		 * 		except one are a single product away.
+		 */
+		int m = comps.size();
+		double[][] pre = new double[m + 1][];
+		double[][] suf = new double[m + 1][];
+		pre[0] = new double[] {1};
+		suf[m] = new double[] {1};
+		for (int c=0;c<m;c++)
+			pre[c+1] = multiply(pre[c], comps.get(c).count);
+		for (int c=m-1;c>=0;c--)
+			suf[c] = multiply(comps.get(c).count, suf[c+1]);
+		double[] total = pre[m];
+
+		//Squares that are not solved and touch no number
+		int free = hiddenLeft - nv;
+		for (int p=0;p<ROWS*COLS;p++)
+			if (cannotBeMine[p] && board.isUnrevealed(p))
+				free--;
+
+		double[] w = weights(total.length - 1, minesLeft, free);
+		double z = 0;
+		double freeMines = 0;
+		for (int s=0;s<total.length;s++) {
+			z += total[s] * w[s];
+			if (free > 0)
+				freeMines += total[s] * w[s] * (minesLeft - s) / free;
+		}
+		if (!(z > 0))
+			return null;
+
+		double[][] values = new double[ROWS][COLS];
+		for (int i=0;i<ROWS;i++) {
+			for (int j=0;j<COLS;j++) {
+				int p = i*COLS+j;
+				if (!board.isUnrevealed(p))
+					values[i][j] = -1;
+				else if (mineCertainty[p])
+					values[i][j] = 1;
+				else if (cannotBeMine[p])
+					values[i][j] = 0;
+				else
+					values[i][j] = freeMines / z;
+			}
+		}
+
+		for (int c=0;c<m;c++) {
+			Component comp = comps.get(c);
+			double[] others = multiply(pre[c], suf[c+1]);
+			double[] g = new double[comp.count.length];
+			for (int k=0;k<g.length;k++)
+				for (int t=0;t<others.length;t++)
+					g[k] += others[t] * w[k+t];
+			for (int v=0;v<comp.cells.length;v++) {
+				double p = 0;
+				boolean never = true;
+				boolean always = true;
+				for (int k=0;k<g.length;k++) {
+					p += comp.hits[v][k] * g[k];
+					never &= comp.hits[v][k] == 0;
+					always &= comp.hits[v][k] == comp.count[k];
+				}
+				int n = comp.cells[v];
+				values[n / COLS][n % COLS] = never ? 0 : always ? 1 : Math.min(1, p / z);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Get the solved counts of a component, from the remembered ones if it has not changed.
+	 * 		A component that has to be solved is put in pending and solved later by
+	 * 		enumerate(), so that all of them can be solved at the same time.
+	 *
+	 * @return Component, with its counts filled in later if it is in pending
+	 */
+	private Component component(IntList vars, IntList cons, IntList conStart, IntList conTarget,
+			IntList compVars, IntList compCons, ArrayList<Problem> pending) {
+
+		//Squares of the component in increasing order, and the local index of each variable
+		int n = compVars.size();
+		int[] cells = new int[n];
+		for (int k=0;k<n;k++)
+			cells[k] = vars.get(compVars.get(k));
+		Arrays.sort(cells);
+		int[] order = new int[n];
+		for (int k=0;k<n;k++)
+			order[k] = Arrays.binarySearch(cells, vars.get(compVars.get(k)));
+
+		/**
+		 * The key is the squares followed by every constraint as its target, its size and the
+		 * 		local indexes of its squares. Constraints are kept in the order of the board,
+		 * 		so the same component always gives the same key.
+		 */
+		int[] sortedCons = compCons.toArray();
+		Arrays.sort(sortedCons);
+		IntList key = new IntList(n + 4 * sortedCons.length);
+		for (int cell : cells)
+			key.add(cell);
+		int[][] local = new int[sortedCons.length][];
+		int[] targets = new int[sortedCons.length];
+		for (int q=0;q<sortedCons.length;q++) {
+			int c = sortedCons[q];
+			int size = conStart.get(c+1) - conStart.get(c);
+			local[q] = new int[size];
+			for (int k=0;k<size;k++)
+				local[q][k] = Arrays.binarySearch(cells, vars.get(cons.get(conStart.get(c) + k)));
+			Arrays.sort(local[q]);
+			targets[q] = conTarget.get(c);
+			key.add(-1);
+			key.add(targets[q]);
+			for (int l : local[q])
+				key.add(l);
+		}
+		Key k = new Key(key.toArray());
+		Component comp = cache.get(k);
+		if (comp == null)
+			comp = used.get(k);
+		if (comp != null) {
+			used.put(k, comp);
+			return comp;
+		}
+
+		//Try squares in the order they were found, so each one is next to the ones before it
+		Problem p = new Problem(k, new Component(cells), order, local, targets);
+		pending.add(p);
+		return p.comp;
+	}
+
+	/**
+	 * Solve every pending component, on the threads of pool if parallel is on, and remember
+	 * 		the ones that were solved.
+	 *
+	 * @return false if it took too many assignments
+	 */
+	private boolean enumerate(ArrayList<Problem> pending) {
+		Search[] results = new Search[pending.size()];
+		if (parallel && !pending.isEmpty()) {
+			ArrayList<Branch> tasks = new ArrayList<Branch>();
+			for (Problem p : pending)
+				tasks.add(new Branch(new Search(p), 0, 0, 0));
+			pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+			for (int k=0;k<tasks.size();k++)
+				results[k] = tasks.get(k).join();
+		} else {
+			for (int k=0;k<pending.size();k++) {
+				Search s = new Search(pending.get(k));
+				boolean ok = s.run(0, 0);
+				s.giveBack();
+				results[k] = ok ? s : null;
+			}
+		}
+		for (Search s : results)
+			if (s == null)
+				return false;
+
+		for (int k=0;k<pending.size();k++) {
+			Problem p = pending.get(k);
+			Search s = results[k];
+			Component comp = p.comp;
+			System.arraycopy(s.count, 0, comp.count, 0, s.count.length);
+			if (s.hits != null)
+				for (int v=0;v<comp.hits.length;v++)
+					System.arraycopy(s.hits[v], 0, comp.hits[v], 0, s.hits[v].length);
+
+			//Scale the counts so that they do not overflow when components are multiplied
+			double max = 0;
+			for (double d : comp.count)
+				max = Math.max(max, d);
+			if (max > 0) {
+				for (int c=0;c<comp.count.length;c++)
+					comp.count[c] /= max;
+				for (double[] h : comp.hits)
+					for (int c=0;c<h.length;c++)
+						h[c] /= max;
+			}
+			used.put(p.key, comp);
+		}
+		return true;
+	}
+
+	/**
+	 * Take assignments from nodesLeft for a search.
+	 *
+	 * @return number of assignments the search may try, 0 if there are none left or the call
+	 * 		was cancelled
+	 */
+	private long grab() {
+		if (cancelled.getAsBoolean())
+			return 0;
+		long before = nodesLeft.getAndAdd(-NODE_CHUNK);
+		return before <= 0 ? 0 : Math.min(before, NODE_CHUNK);
+	}
+
+	/**
+	 * A component that has to be solved: its constraints, and for every square the
+	 * 		constraints it is in. It is only read once made, so searches on different
+	 * 		threads can share it.
+	 */
+	private static final class Problem {
+		final Key key;
+		final Component comp;
+		final int[] visit;
+		final int[][] consOf;
+		final int[] targets;
+		final int[] sizes;
+
+		/**
+		 * @param k, key of the component
+		 * @param c, component to fill in with the counts
+		 * @param v, local indexes in the order to try them
+		 * @param local, local indexes of the squares of every constraint
+		 * @param t, number of mines every constraint needs
+		 */
+		Problem(Key k, Component c, int[] v, int[][] local, int[] t) {
+			key = k;
+			comp = c;
+			visit = v;
+			targets = t;
+			int n = v.length;
+			int[] cnt = new int[n];
+			for (int[] l : local)
+				for (int u : l)
+					cnt[u]++;
+			consOf = new int[n][];
+			for (int u=0;u<n;u++)
+				consOf[u] = new int[cnt[u]];
+			Arrays.fill(cnt, 0);
+			for (int q=0;q<local.length;q++)
+				for (int u : local[q])
+					consOf[u][cnt[u]++] = q;
+			sizes = new int[local.length];
+			for (int q=0;q<local.length;q++)
+				sizes[q] = local[q].length;
+		}
+	}
+
+	/**
+	 * Backtracking search over the assignments of mines to the squares of a Problem, counting
+	 * 		every assignment that agrees with its constraints by the number of mines it uses,
+	 * 		and for every square the number of those assignments where it has a mine.
+	 *
+	 * Every search has its own state and counts, so a search can be copied in the middle
+	 * 		and the copies continued on different threads, as long as their counts are
+	 * 		added together at the end.
+	 */
+	private final class Search {
+		final Problem p;
+
+		//Mines placed and squares left to decide for every constraint
+		final int[] placed;
+		final int[] left;
+		final boolean[] mine;
+
+		//Counts found by this search, hits is only made once a solution is found
+		final double[] count;
+		double[][] hits;
+
+		//Assignments this search took from nodesLeft and has not tried yet
+		private long budget = 0;
+
+		Search(Problem pr) {
+			p = pr;
+			placed = new int[pr.targets.length];
+			left = pr.sizes.clone();
+			mine = new boolean[pr.visit.length];
+			count = new double[pr.visit.length + 1];
+		}
+
+		/**
+		 * Copy the state of another search, but not its counts
+		 */
+		Search(Search s) {
+			p = s.p;
+			placed = s.placed.clone();
+			left = s.left.clone();
+			mine = s.mine.clone();
+			count = new double[s.count.length];
+		}
+
+		/**
+		 * Decide a square.
+		 * @param v, local index
+		 * @param choice, 1 for a mine, 0 for no mine
+		 * @return whether every constraint of the square can still be met
+		 */
+		boolean set(int v, int choice) {
+			boolean ok = true;
+			for (int c : p.consOf[v]) {
+				placed[c] += choice;
+				left[c]--;
+				if (placed[c] > p.targets[c] || placed[c] + left[c] < p.targets[c])
+					ok = false;
+			}
+			mine[v] = choice == 1;
+			return ok;
+		}
+
+		/**
+		 * Undo set()
+		 */
+		void unset(int v, int choice) {
+			for (int c : p.consOf[v]) {
+				placed[c] -= choice;
+				left[c]++;
+			}
+			mine[v] = false;
+		}
+
+		/**
+		 * Decide the square at index depth of visit and every square after it.
+		 *
+		 * @param depth
+		 * @param mines, mines placed so far
+		 * @return false if it took too many assignments
+		 */
+		boolean run(int depth, int mines) {
+			if (!take())
+				return false;
+			int[] visit = p.visit;
+			if (depth == visit.length) {
+				count[mines]++;
+				if (hits == null)
+					hits = new double[visit.length][visit.length + 1];
+				for (int v=0;v<mine.length;v++)
+					if (mine[v])
+						hits[v][mines]++;
+				return true;
+			}
+			int v = visit[depth];
+			for (int choice=0;choice<=1;choice++) {
+				if (set(v, choice) && !run(depth + 1, mines + choice))
+					return false;
+				unset(v, choice);
+			}
+			return true;
+		}
+
+		/**
+		 * Use up one assignment, taking more from nodesLeft if needed.
+		 * @return false if there are none left
+		 */
+		boolean take() {
+			if (budget == 0) {
+				budget = grab();
+				if (budget == 0)
+					return false;
+			}
+			budget--;
+			return true;
+		}
+
+		/**
+		 * Give the assignments that were not tried back to nodesLeft
+		 */
+		void giveBack() {
+			nodesLeft.addAndGet(budget);
+			budget = 0;
+		}
+
+		/**
+		 * Add the counts of another search of the same Problem to this one
+		 * @param s
+		 */
+		void add(Search s) {
+			for (int k=0;k<count.length;k++)
+				count[k] += s.count[k];
+			if (s.hits == null)
+				return;
+			if (hits == null) {
+				hits = s.hits;
+				return;
+			}
+			for (int v=0;v<hits.length;v++)
+				for (int k=0;k<count.length;k++)
+					hits[v][k] += s.hits[v][k];
+		}
+	}
+
+	/**
+	 * Fork join task continuing a search from a square. While the component has enough
+	 * 		squares left and the task is not too deep, it branches on the square (the pivot)
+	 * 		and forks the branch with a mine, so that idle threads can steal it. Each task
+	 * 		returns its search with the counts of its branch, or null if it took too many
+	 * 		assignments.
+	 */
+	@SuppressWarnings("serial")
+	private final class Branch extends RecursiveTask<Search> {
+		private final Search s;
+		private final int depth;
+		private final int mines;
+		private final int level;
+
+		Branch(Search ss, int d, int m, int l) {
+			s = ss;
+			depth = d;
+			mines = m;
+			level = l;
+		}
+
+		@Override
+		protected Search compute() {
+			if (level >= splitLevels || s.p.visit.length - depth <= SPLIT_LEAF) {
+				boolean ok = s.run(depth, mines);
+				s.giveBack();
+				return ok ? s : null;
+			}
+			if (!s.take()) {
+				s.giveBack();
+				return null;
+			}
+			int v = s.p.visit[depth];
+			Search withMine = new Search(s);
+			Branch fork = null;
+			if (withMine.set(v, 1)) {
+				fork = new Branch(withMine, depth + 1, mines + 1, level + 1);
+				fork.fork();
+			}
+			Search result = s;
+			if (s.set(v, 0))
+				result = new Branch(s, depth + 1, mines, level + 1).compute();
+			else
+				s.giveBack();
+			Search other = fork == null ? null : fork.join();
+			if (result == null || fork != null && other == null)
+				return null;
+			if (other != null)
+				result.add(other);
+			return result;
+		}
+	}
+
+	/**
+	 * Multiply two polynomials given by their coefficients.
+	 */
+	private static double[] multiply(double[] a, double[] b) {
+		double[] r = new double[a.length + b.length - 1];
+		for (int i=0;i<a.length;i++)
+			if (a[i] != 0)
+				for (int j=0;j<b.length;j++)
+					r[i+j] += a[i] * b[j];
+		return r;
+	}
+
+	/**
+	 * For every number of mines s on the frontier, the number of ways to put the remaining
+	 * 		minesLeft-s mines on the free squares, which is C(free, minesLeft-s). These are
+	 * 		only needed relative to each other, so they are scaled to have a largest value
+	 * 		of 1, and worked out with logarithms so that huge boards do not overflow.
+	 *
+	 * @param maxS, largest number of mines on the frontier
+	 * @param minesLeft, mines that are not known yet
+	 * @param free, squares that are not solved and touch no number
+	 * @return double[] of length maxS+1
+	 */
+	private static double[] weights(int maxS, int minesLeft, int free) {
+		double[] lw = new double[maxS + 1];
+		boolean[] valid = new boolean[maxS + 1];
+		double max = Double.NEGATIVE_INFINITY;
+		boolean started = false;
+		for (int s=0;s<=maxS;s++) {
+			int r = minesLeft - s;
+			if (r < 0 || r > free)
+				continue;
+			valid[s] = true;
+			if (!started) {
+				lw[s] = 0;
+				started = true;
+			} else {
+				//C(free, r) / C(free, r+1) = (r+1) / (free-r)
+				lw[s] = lw[s-1] + Math.log((double)(r + 1) / (free - r));
+			}
+			max = Math.max(max, lw[s]);
+		}
+		double[] w = new double[maxS + 1];
+		for (int s=0;s<=maxS;s++)
+			if (valid[s])
+				w[s] = Math.exp(lw[s] - max);
+		return w;
+	}
+
+	/**
+	 * Counts of the solutions of a component. count[k] is the number of solutions with k
+	 * 		mines and hits[v][k] the number of those where square v has a mine, both scaled
+	 * 		by the same factor.
+	 */
+	private static final class Component {
+		final int[] cells;
+		final double[] count;
+		final double[][] hits;
+
+		Component(int[] c) {
+			cells = c;
+			count = new double[c.length + 1];
+			hits = new double[c.length][c.length + 1];
+		}
+	}
+
+	/**
+	 * Key of a component in the cache, comparing the contents of the array.
+	 */
+	private static final class Key {
+		final int[] data;
+		final int hash;
+
+		Key(int[] d) {
+			data = d;
+			hash = Arrays.hashCode(d);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && Arrays.equals(data, ((Key)o).data);
+		}
+	}
+}
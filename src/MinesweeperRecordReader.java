@@ -0,0 +1,299 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Reads games written by MinesweeperRecordWriter, one after another.
+ *
+ * The file is read in blocks of 1MB into a direct buffer, and every game is parsed in
+ * 		place in the buffer, so going through a file takes few system calls and copies
+ * 		nothing besides the blocks themselves. A game is only looked at as far as it is
+ * 		asked for: next() reads its header and jumps over whatever moves of the last game
+ * 		were not read, so counting wins reads the header of every game and nothing else.
+ *
+ * 		MinesweeperRecordReader in = MinesweeperRecordReader.open(path);
+ * 		while (in.next()) {
+ * 			MinesweeperBoard board = in.newBoard();
+ * 			while (in.nextMove())
+ * 				in.apply(board);
+ * 		}
+ *
+ * @author Haoxian (Roger) Hu
+ */
+public final class MinesweeperRecordReader implements Closeable {
+
+	//Number of bytes read from the channel at once, unless a game is larger
+	private static final int BLOCK = 1 << 20;
+
+	//Where the games are read from
+	private ReadableByteChannel channel;
+
+	//Bytes read from the channel that are not parsed yet
+	private ByteBuffer buf = ByteBuffer.allocateDirect(BLOCK).order(ByteOrder.LITTLE_ENDIAN);
+
+	//Position in the buffer where the current game ends, -1 before the first game
+	private int gameEnd = -1;
+
+	//Header of the current game
+	private int flags;
+	private int ROWS;
+	private int COLS;
+	private int MINES;
+	private long seed;
+	private int minesAt;
+
+	//Current move
+	private int kind;
+	private int pos;
+
+	/**
+	 * Constructor, checking the bytes at the start of the file. The channel is closed with
+	 * 		the reader.
+	 *
+	 * @param ch, channel to read from
+	 * @throws IOException if the channel does not hold games
+	 */
+	public MinesweeperRecordReader(ReadableByteChannel ch) throws IOException {
+		channel = ch;
+		buf.flip();
+		byte[] magic = MinesweeperRecordWriter.MAGIC;
+		if (!ensure(magic.length + 1))
+			throw new IOException("Not a file of games!");
+		for (byte b : magic)
+			if (buf.get() != b)
+				throw new IOException("Not a file of games!");
+		int version = buf.get();
+		if (version != MinesweeperRecordWriter.VERSION)
+			throw new IOException("Unknown version "+version+" of the file of games!");
+	}
+
+	/**
+	 * Make a reader for a file
+	 *
+	 * @param path
+	 * @return MinesweeperRecordReader
+	 * @throws IOException
+	 */
+	public static MinesweeperRecordReader open(Path path) throws IOException {
+		FileChannel ch = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			return new MinesweeperRecordReader(ch);
+		} catch (IOException e) {
+			ch.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Go to the next game and read its header
+	 *
+	 * @return false if there are no more games
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException {
+		if (gameEnd >= 0)
+			buf.position(gameEnd);
+		gameEnd = -1;
+		if (!ensure(1))
+			return false;
+		ensure(10);
+		long length = readVarint(buf.limit());
+		if (length > Integer.MAX_VALUE - 8 || !ensure((int)length))
+			throw new EOFException("Game is cut off!");
+		gameEnd = buf.position() + (int)length;
+		flags = buf.get();
+		ROWS = (int)readVarint(gameEnd);
+		COLS = (int)readVarint(gameEnd);
+		MINES = (int)readVarint(gameEnd);
+		seed = buf.getLong();
+		minesAt = -1;
+		if ((flags & MinesweeperRecordWriter.HAS_MINES) != 0) {
+			minesAt = buf.position();
+			buf.position(minesAt + (int)(((long)ROWS * COLS + 7) / 8));
+		}
+		if (buf.position() > gameEnd)
+			throw new IOException("Game is cut off!");
+		return true;
+	}
+
+	public int getRows() {
+		return ROWS;
+	}
+
+	public int getCols() {
+		return COLS;
+	}
+
+	public int getMines() {
+		return MINES;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * @return true if the game was finished when it was recorded
+	 */
+	public boolean isFinished() {
+		return (flags & MinesweeperRecordWriter.FINISHED) != 0;
+	}
+
+	/**
+	 * @return true if the game was won
+	 */
+	public boolean isWon() {
+		return (flags & MinesweeperRecordWriter.WON) != 0;
+	}
+
+	/**
+	 * @return true if the mines of the game are stored, false if the seed is enough
+	 */
+	public boolean hasMines() {
+		return minesAt >= 0;
+	}
+
+	/**
+	 * @return BitSet with bit row*COLS+column set for every mine, or null if the mines
+	 * 		are not stored
+	 */
+	public BitSet getMineBits() {
+		if (minesAt < 0)
+			return null;
+		int len = (int)(((long)ROWS * COLS + 7) / 8);
+		return BitSet.valueOf(buf.duplicate().position(minesAt).limit(minesAt + len));
+	}
+
+	/**
+	 * Make the board of the current game, before any move was made.
+	 *
+	 * @return MinesweeperBoard
+	 */
+	public MinesweeperBoard newBoard() {
+		MinesweeperBoard board = new MinesweeperBoard(ROWS, COLS, MINES, seed);
+		if (minesAt >= 0)
+			board.placeMines(getMineBits());
+		return board;
+	}
+
+	/**
+	 * Go to the next move of the current game
+	 *
+	 * @return false if there are no more moves
+	 * @throws IOException
+	 */
+	public boolean nextMove() throws IOException {
+		if (gameEnd < 0 || buf.position() >= gameEnd)
+			return false;
+		long m = readVarint(gameEnd);
+		kind = (int)(m & 3);
+		pos = (int)(m >>> 2);
+		return true;
+	}
+
+	/**
+	 * @return kind of the current move, MinesweeperRecordWriter.REVEAL, RIGHT_CLICK, FLAG
+	 * 		or CHORD
+	 */
+	public int getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return row index of the current move
+	 */
+	public int getX() {
+		return pos / COLS;
+	}
+
+	/**
+	 * @return column index of the current move
+	 */
+	public int getY() {
+		return pos % COLS;
+	}
+
+	/**
+	 * Make the current move on a board
+	 *
+	 * @param board, board of the game
+	 */
+	public void apply(MinesweeperBoard board) {
+		int x = getX();
+		int y = getY();
+		switch (kind) {
+		case MinesweeperRecordWriter.REVEAL: board.reveal(x, y); break;
+		case MinesweeperRecordWriter.RIGHT_CLICK: board.rightClick(x, y); break;
+		case MinesweeperRecordWriter.FLAG: board.flag(x, y); break;
+		default: board.chord(x, y);
+		}
+	}
+
+	/**
+	 * Make the board of the current game and make the moves of the game that are left on it.
+	 *
+	 * @return MinesweeperBoard
+	 * @throws IOException
+	 */
+	public MinesweeperBoard replay() throws IOException {
+		MinesweeperBoard board = newBoard();
+		while (nextMove())
+			apply(board);
+		return board;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Helper method to read a varint
+	 * @param end, position in the buffer it must end before
+	 * @return long
+	 * @throws IOException if it does not end before end
+	 */
+	private long readVarint(int end) throws IOException {
+		long v = 0;
+		for (int shift=0;shift<64;shift+=7) {
+			if (buf.position() >= end)
+				break;
+			int b = buf.get();
+			v |= (long)(b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return v;
+		}
+		throw new IOException("Bad number in file of games!");
+	}
+
+	/**
+	 * Helper method to make sure the buffer has n bytes that are not parsed yet, reading
+	 * 		more from the channel and making the buffer larger if needed. The bytes that are
+	 * 		already parsed may be thrown away, so positions in the buffer change.
+	 * @param n
+	 * @return false if the channel ends first
+	 * @throws IOException
+	 */
+	private boolean ensure(int n) throws IOException {
+		if (buf.remaining() >= n)
+			return true;
+		buf.compact();
+		if (buf.capacity() < n) {
+			ByteBuffer bigger = ByteBuffer.allocateDirect(Math.max(n, 2 * buf.capacity())).order(ByteOrder.LITTLE_ENDIAN);
+			buf.flip();
+			bigger.put(buf);
+			buf = bigger;
+		}
+		while (buf.position() < n && channel.read(buf) >= 0)
+			;
+		buf.flip();
+		return buf.remaining() >= n;
+	}
+}
@@ -0,0 +1,348 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes games to the compact binary record format that MinesweeperRecordReader reads.
+ *
+ * A file starts with the 4 bytes "MSWR" and a version byte, followed by the games one after
+ * 		another. Every game is the length of the rest of the game, followed by:
+ *
+ * 		flags, 1 byte: 1 if the game is finished, 2 if it was won, 4 if the mines are stored
+ * 		rows, columns and mines
+ * 		seed, 8 bytes
+ * 		mines, (rows*columns+7)/8 bytes with bit n%8 of byte n/8 set if square n has a mine,
+ * 			only if flag 4 is set
+ * 		moves, until the end of the game
+ *
+ * Every number except the seed is an unsigned varint: 7 bits in every byte, lowest first,
+ * 		with the highest bit set on every byte but the last. A move is the varint
+ * 		(row*COLS+column) << 2 | kind, with kind one of REVEAL, RIGHT_CLICK, FLAG or CHORD,
+ * 		so that a move on a 16x30 board takes 2 bytes at most.
+ *
+ * A board made with MinesweeperBoard(rows, columns, mines, seed) is the board of the game,
+ * 		so the mines only have to be stored when the board was made some other way, such as
+ * 		with newGame(x, y) or a different random number generator. Because the length of
+ * 		every game comes first, the reader can skip a game without looking at its moves.
+ *
+ * The moves of a game are kept in memory until endGame(), and finished games are written
+ * 		out in blocks of 64KB, so writing a game takes no system calls most of the time.
+ * 		A writer made without a channel keeps everything in memory, so that games can be
+ * 		recorded on many threads and added to a file in order with append().
+ *
+ * @author Haoxian (Roger) Hu
+ */
+public final class MinesweeperRecordWriter implements Closeable {
+
+	//First bytes of every file, and version of the format
+	static final byte[] MAGIC = {'M', 'S', 'W', 'R'};
+	static final int VERSION = 1;
+
+	//Kinds of moves
+	public static final int REVEAL = 0;
+	public static final int RIGHT_CLICK = 1;
+	public static final int FLAG = 2;
+	public static final int CHORD = 3;
+
+	//Bits of the flags of a game
+	static final int FINISHED = 1;
+	static final int WON = 2;
+	static final int HAS_MINES = 4;
+
+	//Finished games are written to the channel once there are this many bytes of them
+	private static final int BLOCK = 1 << 16;
+
+	//Where the games are written, null if they are only kept in memory
+	private WritableByteChannel channel;
+
+	//Finished games that are not written yet, the header and moves of the current game
+	private final Bytes out = new Bytes();
+	private final Bytes head = new Bytes();
+	private final Bytes moves = new Bytes();
+
+	//Header of the current game, and whether there is one
+	private int ROWS;
+	private int COLS;
+	private int MINES;
+	private long seed;
+	private byte[] mineBits;
+	private boolean open = false;
+
+	/**
+	 * Constructor, keeping the games in memory, without the bytes at the start of a file
+	 */
+	public MinesweeperRecordWriter() {
+	}
+
+	/**
+	 * Constructor, writing the games to a channel. The channel is closed with the writer.
+	 *
+	 * @param ch, channel to write to
+	 */
+	public MinesweeperRecordWriter(WritableByteChannel ch) {
+		channel = ch;
+		out.put(MAGIC, 0, MAGIC.length);
+		out.put(VERSION);
+	}
+
+	/**
+	 * Make a writer that writes to a new file, replacing it if it exists.
+	 *
+	 * @param path
+	 * @return MinesweeperRecordWriter
+	 * @throws IOException
+	 */
+	public static MinesweeperRecordWriter open(Path path) throws IOException {
+		return new MinesweeperRecordWriter(FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+	}
+
+	/**
+	 * Start recording a game on a board. A game that is still being recorded is ended as
+	 * 		it was left, without a result.
+	 *
+	 * @param board, board of the game, before any move is made
+	 * @param withMines, whether to store the mines, needed unless the board was made with
+	 * 		MinesweeperBoard(rows, columns, mines, seed)
+	 * @throws IOException
+	 */
+	public void startGame(MinesweeperBoard board, boolean withMines) throws IOException {
+		if (open)
+			end(0);
+		ROWS = board.getRows();
+		COLS = board.getCols();
+		MINES = board.getMines();
+		seed = board.getSeed();
+		mineBits = null;
+		if (withMines) {
+			mineBits = new byte[(int)(((long)ROWS * COLS + 7) / 8)];
+			for (int i=0;i<ROWS;i++) {
+				for (int j=0;j<COLS;j++) {
+					int n = i*COLS+j;
+					if (board.getValue(i, j) == -1)
+						mineBits[n >>> 3] |= 1 << (n & 7);
+				}
+			}
+		}
+		moves.size = 0;
+		open = true;
+	}
+
+	/**
+	 * Record a left click
+	 * @param x, row index
+	 * @param y, column index
+	 */
+	public void reveal(int x, int y) {
+		move(x, y, REVEAL);
+	}
+
+	/**
+	 * Record a right click
+	 * @param x, row index
+	 * @param y, column index
+	 */
+	public void rightClick(int x, int y) {
+		move(x, y, RIGHT_CLICK);
+	}
+
+	/**
+	 * Record marking or unmarking a square
+	 * @param x, row index
+	 * @param y, column index
+	 */
+	public void flag(int x, int y) {
+		move(x, y, FLAG);
+	}
+
+	/**
+	 * Record a chord
+	 * @param x, row index
+	 * @param y, column index
+	 */
+	public void chord(int x, int y) {
+		move(x, y, CHORD);
+	}
+
+	/**
+	 * Record the squares opened by revealBeginning(), useCheat() or restart(), which pick
+	 * 		their squares with the random number generator of the board, as the left clicks
+	 * 		that open them again. They open either one blank and the squares around it, which
+	 * 		one click on the blank does, or up to 3 numbers, which take one click each.
+	 *
+	 * @param opened, what the move returned
+	 * @param board, board the move was made on
+	 */
+	public void opened(IntList opened, MinesweeperBoard board) {
+		if (opened.isEmpty())
+			return;
+		int first = opened.get(0);
+		boolean blank = board.getValue(first / board.getCols(), first % board.getCols()) == 0;
+		for (int k=0;k<(blank ? 1 : opened.size());k++)
+			reveal(opened.get(k) / board.getCols(), opened.get(k) % board.getCols());
+	}
+
+	/**
+	 * Record the moves of a batch that MinesweeperBoard.play() made
+	 *
+	 * @param moves, batch given to play()
+	 */
+	public void played(MinesweeperMoves moves) {
+		for (int k=0;k<moves.getApplied();k++) {
+			int x = moves.getX(k);
+			int y = moves.getY(k);
+			switch (moves.getKind(k)) {
+			case MinesweeperMoves.REVEAL: reveal(x, y); break;
+			case MinesweeperMoves.RIGHT_CLICK: rightClick(x, y); break;
+			case MinesweeperMoves.FLAG: flag(x, y); break;
+			case MinesweeperMoves.CHORD: chord(x, y); break;
+			default: throw new IllegalArgumentException("Unknown kind of move "+moves.getKind(k)+"!");
+			}
+		}
+	}
+
+	/**
+	 * Helper method to add a move to the current game
+	 */
+	private void move(int x, int y, int kind) {
+		if (!open)
+			throw new IllegalArgumentException("No game has been started!");
+		moves.putVarint(((long)x * COLS + y) << 2 | kind);
+	}
+
+	/**
+	 * Finish recording the current game, storing whether it is finished and won.
+	 *
+	 * @param board, board of the game
+	 * @throws IOException
+	 */
+	public void endGame(MinesweeperBoard board) throws IOException {
+		if (!open)
+			return;
+		end((board.isFinished() ? FINISHED : 0) | (board.isWon() ? WON : 0));
+	}
+
+	/**
+	 * Helper method to add the current game to the games that are not written yet
+	 * @param flags, FINISHED and WON
+	 * @throws IOException
+	 */
+	private void end(int flags) throws IOException {
+		head.size = 0;
+		head.put(flags | (mineBits != null ? HAS_MINES : 0));
+		head.putVarint(ROWS);
+		head.putVarint(COLS);
+		head.putVarint(MINES);
+		for (int k=0;k<8;k++)
+			head.put((int)(seed >>> (8 * k)));
+		long length = (long)head.size + moves.size + (mineBits != null ? mineBits.length : 0);
+		out.putVarint(length);
+		out.put(head.data, 0, head.size);
+		if (mineBits != null)
+			out.put(mineBits, 0, mineBits.length);
+		out.put(moves.data, 0, moves.size);
+		moves.size = 0;
+		mineBits = null;
+		open = false;
+		if (channel != null && out.size >= BLOCK)
+			flush();
+	}
+
+	/**
+	 * Add games recorded by a writer made without a channel, in the order they were
+	 * 		recorded.
+	 *
+	 * @param games, what toByteArray() returned
+	 * @throws IOException
+	 */
+	public void append(byte[] games) throws IOException {
+		out.put(games, 0, games.length);
+		if (channel != null && out.size >= BLOCK)
+			flush();
+	}
+
+	/**
+	 * @return byte[] of the games ended so far that are not written yet, which for a writer
+	 * 		made without a channel is every game since the last reset()
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(out.data, out.size);
+	}
+
+	/**
+	 * Forget the games ended so far that are not written yet
+	 */
+	public void reset() {
+		out.size = 0;
+	}
+
+	/**
+	 * Write the games ended so far to the channel
+	 * @throws IOException
+	 */
+	public void flush() throws IOException {
+		if (channel == null)
+			return;
+		ByteBuffer buf = ByteBuffer.wrap(out.data, 0, out.size);
+		while (buf.hasRemaining())
+			channel.write(buf);
+		out.size = 0;
+	}
+
+	/**
+	 * End the current game, write everything and close the channel
+	 */
+	@Override
+	public void close() throws IOException {
+		if (open)
+			end(0);
+		if (channel == null)
+			return;
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Growable array of bytes
+	 */
+	private static final class Bytes {
+		byte[] data = new byte[256];
+		int size = 0;
+
+		void put(int b) {
+			if (size == data.length)
+				grow(1);
+			data[size++] = (byte)b;
+		}
+
+		void put(byte[] b, int off, int len) {
+			if (size + len > data.length)
+				grow(len);
+			System.arraycopy(b, off, data, size, len);
+			size += len;
+		}
+
+		void putVarint(long v) {
+			while ((v & ~0x7FL) != 0) {
+				put((int)(v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			put((int)v);
+		}
+
+		private void grow(int more) {
+			long n = Math.max(2L * data.length, (long)size + more);
+			if (n > Integer.MAX_VALUE - 8)
+				throw new IllegalArgumentException("Game is too large to record!");
+			data = Arrays.copyOf(data, (int)n);
+		}
+	}
+}
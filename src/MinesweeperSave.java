@@ -0,0 +1,192 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves a game in progress to a file and loads it back, so that a game on a huge board can
+ * 		be stopped and carried on later.
+ *
+ * The file has a fixed layout, so that every part of it can be found without reading the
+ * 		parts before it:
+ *
+ * 		0		"MSSV" and the version, 4 bytes each
+ * 		8		rows, columns and mines, 4 bytes each
+ * 		20		flags, 4 bytes: 1 if revealBeginning() was used, 2 if the game is finished,
+ * 				4 if it was won, 8 if what the algorithm found out is stored
+ * 		24		seed, 8 bytes
+ * 		64		every square as the byte MinesweeperBoard stores it, at 64 + row*COLS+column
+ * 		64+N	squares the algorithm knows are mines, one bit each, (N+7)/8 bytes
+ * 		...		squares the algorithm knows are safe, one bit each, (N+7)/8 bytes
+ *
+ * 		with N = rows*columns, and the numbers stored lowest byte first.
+ *
+ * Loading only reads the header and maps the rest of the file. The board reads a chunk of
+ * 		squares from the mapping the first time something looks at it, so loading takes the
+ * 		same time for every size of board, and the operating system only reads the pages of
+ * 		the file for the part of the board that the view or the algorithm looks at.
+ *
+ * The random number generator of a loaded board is a SplittableRandom made from the seed,
+ * 		like for MinesweeperBoard(rows, columns, mines, seed).
+ *
+ * @author Haoxian (Roger) Hu
+ */
+public final class MinesweeperSave {
+
+	//First bytes of every file, and version of the layout
+	private static final int MAGIC = 'M' | 'S' << 8 | 'S' << 16 | 'V' << 24;
+	private static final int VERSION = 1;
+
+	//Size of the header, where the squares start
+	private static final int HEADER = 64;
+
+	//Bits of the flags
+	private static final int REVEALED_BEGINNING = 1;
+	private static final int FINISHED = 2;
+	private static final int WON = 4;
+	private static final int DEDUCTIONS = 8;
+
+	//Board of the file, whose squares are read from the mapping as they are needed
+	private MinesweeperBoard board;
+
+	//Flags of the file
+	private int flags;
+
+	//Mapped bits of the squares the algorithm knows are mines and knows are safe
+	private MappedByteBuffer mines;
+	private MappedByteBuffer safe;
+
+	/**
+	 * Constructor, only called by open()
+	 */
+	private MinesweeperSave(MinesweeperBoard b, int f, MappedByteBuffer m, MappedByteBuffer s) {
+		board = b;
+		flags = f;
+		mines = m;
+		safe = s;
+	}
+
+	/**
+	 * Save a board, and what an algorithm has found out about it. The file is written next
+	 * 		to path first and then moved over it, so a board loaded from path can be saved
+	 * 		back to it, and a save that fails leaves the old file as it was.
+	 *
+	 * @param path
+	 * @param board, board to save
+	 * @param alg, algorithm of the board, or null to only save the board. Must not be
+	 * 		running on another thread, and update() should have run to the end since the
+	 * 		board last changed, since a restored algorithm does not look through the numbers.
+	 * @throws IOException
+	 */
+	public static void save(Path path, MinesweeperBoard board, MinesweeperAlg alg) throws IOException {
+		MinesweeperSnapshot snap = board.snapshot();
+		int size = snap.getRows() * snap.getCols();
+		int bits = (int)(((long)size + 7) / 8);
+		Path tmp = path.resolveSibling(path.getFileName()+".tmp");
+		try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer head = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+			head.putInt(MAGIC).putInt(VERSION);
+			head.putInt(snap.getRows()).putInt(snap.getCols()).putInt(snap.getMines());
+			head.putInt((snap.revealedBeginning ? REVEALED_BEGINNING : 0) | (snap.isFinished() ? FINISHED : 0)
+					| (snap.isWon() ? WON : 0) | (alg != null ? DEDUCTIONS : 0));
+			head.putLong(snap.getSeed());
+			head.clear();
+			while (head.hasRemaining())
+				ch.write(head, head.position());
+
+			MappedByteBuffer cells = ch.map(FileChannel.MapMode.READ_WRITE, HEADER, size);
+			for (int k=0;k<snap.chunks.length;k++) {
+				if (snap.chunks[k] != null)
+					cells.put(snap.chunks[k]);
+				else
+					cells.put(snap.source.slice(k << MinesweeperBoard.CHUNK_SHIFT,
+							Math.min(MinesweeperBoard.CHUNK_MASK + 1, size - (k << MinesweeperBoard.CHUNK_SHIFT))));
+			}
+			cells.force();
+
+			MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_WRITE, (long)HEADER + size, bits);
+			MappedByteBuffer s = ch.map(FileChannel.MapMode.READ_WRITE, (long)HEADER + size + bits, bits);
+			if (alg != null) {
+				alg.writeDeductions(m, s);
+				m.force();
+				s.force();
+			}
+		}
+		try {
+			Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Load a saved game. Only the header is read, the squares are read as they are needed.
+	 *
+	 * @param path
+	 * @return MinesweeperSave
+	 * @throws IOException if the file is not a saved game
+	 */
+	public static MinesweeperSave open(Path path) throws IOException {
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer head = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+			while (head.hasRemaining() && ch.read(head, head.position()) >= 0)
+				;
+			head.flip();
+			if (head.remaining() < HEADER || head.getInt() != MAGIC)
+				throw new IOException("Not a saved game!");
+			int version = head.getInt();
+			if (version != VERSION)
+				throw new IOException("Unknown version "+version+" of saved game!");
+			int rows = head.getInt();
+			int cols = head.getInt();
+			int mines = head.getInt();
+			int flags = head.getInt();
+			long seed = head.getLong();
+			if (rows < 1 || cols < 1 || (long)rows * cols > Integer.MAX_VALUE - 8)
+				throw new IOException("Saved game has a board of "+rows+"x"+cols+"!");
+			int size = rows * cols;
+			int bits = (int)(((long)size + 7) / 8);
+			if (ch.size() < (long)HEADER + size + 2L * bits)
+				throw new IOException("Saved game is cut off!");
+
+			MappedByteBuffer cells = ch.map(FileChannel.MapMode.READ_ONLY, HEADER, size);
+			MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_ONLY, (long)HEADER + size, bits);
+			MappedByteBuffer s = ch.map(FileChannel.MapMode.READ_ONLY, (long)HEADER + size + bits, bits);
+			MinesweeperBoard board = new MinesweeperBoard(rows, cols, mines, seed, cells,
+					(flags & REVEALED_BEGINNING) != 0, (flags & FINISHED) != 0, (flags & WON) != 0);
+			return new MinesweeperSave(board, flags, m, s);
+		}
+	}
+
+	/**
+	 * @return board of the saved game
+	 */
+	public MinesweeperBoard getBoard() {
+		return board;
+	}
+
+	/**
+	 * @return true if what the algorithm found out was saved
+	 */
+	public boolean hasDeductions() {
+		return (flags & DEDUCTIONS) != 0;
+	}
+
+	/**
+	 * Give an algorithm of the board of the saved game what was found out before it was
+	 * 		saved, so it does not have to work it out again. Does nothing if nothing was saved.
+	 *
+	 * @param alg, algorithm made with getBoard()
+	 */
+	public void restore(MinesweeperAlg alg) {
+		if (hasDeductions())
+			alg.readDeductions(mines.duplicate(), safe.duplicate());
+	}
+}
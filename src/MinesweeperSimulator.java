@@ -0,0 +1,510 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Command line simulator that lets MinesweeperAlg play many games on its own and reports
+ * 		how well and how fast it plays.
+ *
+ * Every game starts like in the game, with revealBeginning(). After that the algorithm
+ * 		reveals every square it knows is safe in one batch of MinesweeperMoves, and when
+ * 		there are none it guesses the square with the lowest probability of being a mine.
+ * 		Squares with no information in the heuristic probabilities are given the density
+ * 		of the mines that are left, and the other squares are compared by the estimate
+ * 		of MinesweeperAlg before it is scaled for the colours, so both are probabilities.
+ *
+ * Games are played on a ForkJoinPool with one thread per core. Every game has its own
+ * 		board, algorithm and seed and returns its result, so the threads share nothing
+ * 		while playing, and the same seed always gives the same games.
+ *
+ * Infinite games are played on a MinesweeperInfiniteBoard. The algorithm solves a window of
+ * 		WINDOW by WINDOW squares around the square revealed last, made with window(),
+ * 		and always uses the heuristic probabilities, since the exact ones would use the
+ * 		number of mines in the window. A game is won once --goal squares are revealed.
+ *
+ * With --record, every game is recorded with MinesweeperRecordWriter. Games are recorded
+ * 		in memory by the thread that plays them and written to the file in the order of
+ * 		their seeds, a batch at a time, so the file is the same for every number of threads.
+ * 		With --scan, a file of games is read back and summed up instead of playing.
+ *
+ * Usage: java MinesweeperSimulator [options] [difficulty...]
+ * 		difficulty: easy, medium, hard, RxCxM for R rows, C columns and M mines, or
+ * 			infinite or infinite:D for an infinite board with mine density D (default 0.2)
+ * 		--games N, games per difficulty (default 10000)
+ * 		--seed S, seed of the first game (default 1)
+ * 		--threads T, number of threads (default number of cores)
+ * 		--heuristic, use the heuristic probabilities instead of the exact ones
+ * 		--goal N, squares to reveal to win an infinite game (default 10000)
+ * 		--record FILE, write every game to FILE
+ * 		--scan FILE, read the games in FILE and report on them instead of playing
+ * 		--metrics, also print the counts of MinesweeperMetrics for every difficulty
+ *
+ * @author Haoxian (Roger) Hu
+ */
+public final class MinesweeperSimulator {
+
+	//Number of games whose records are kept in memory at once when recording
+	private static final int BATCH = 1 << 14;
+
+	//Board size and mines of every difficulty of the menu
+	private static final String[] NAMES = {"easy", "medium", "hard"};
+	private static final int[][] SIZES = {{9, 9, 10}, {16, 16, 40}, {16, 30, 100}};
+
+	//Size of the window of an infinite board that the algorithm solves at a time
+	private static final int WINDOW = 32;
+
+	//Board size and mines
+	private final int ROWS;
+	private final int COLS;
+	private final int MINES;
+
+	//Whether the algorithm uses the exact probabilities
+	private final boolean exact;
+
+	//Probability of a square having a mine and squares to reveal to win an infinite game, 0 for a board of ROWS x COLS
+	private final double DENSITY;
+	private final long GOAL;
+
+	/**
+	 * Constructor
+	 *
+	 * @param r, number of rows
+	 * @param c, number of columns
+	 * @param m, number of mines
+	 * @param e, whether to use the exact probabilities
+	 */
+	public MinesweeperSimulator(int r, int c, int m, boolean e) {
+		ROWS = r;
+		COLS = c;
+		MINES = m;
+		exact = e;
+		DENSITY = 0;
+		GOAL = 0;
+	}
+
+	/**
+	 * Constructor for infinite games
+	 *
+	 * @param d, probability of a square having a mine
+	 * @param g, number of squares to reveal to win
+	 */
+	public MinesweeperSimulator(double d, long g) {
+		ROWS = WINDOW;
+		COLS = WINDOW;
+		MINES = 0;
+		exact = false;
+		DENSITY = d;
+		GOAL = g;
+	}
+
+	/**
+	 * Result of one game
+	 */
+	public static final class Result {
+		public final boolean won;
+		public final int moves;
+		public final int guesses;
+		public final long nanos;
+
+		Result(boolean w, int m, int g, long n) {
+			won = w;
+			moves = m;
+			guesses = g;
+			nanos = n;
+		}
+	}
+
+	/**
+	 * Play one game.
+	 *
+	 * @param seed, seed of the board
+	 * @return Result
+	 */
+	public Result play(long seed) {
+		try {
+			return play(seed, null);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Play one game, recording it.
+	 *
+	 * @param seed, seed of the board
+	 * @param rec, records the game, or null
+	 * @return Result
+	 * @throws IOException
+	 */
+	public Result play(long seed, MinesweeperRecordWriter rec) throws IOException {
+		if (DENSITY > 0) {
+			if (rec != null)
+				throw new IllegalArgumentException("Infinite games cannot be recorded!");
+			return playInfinite(seed);
+		}
+		long start = System.nanoTime();
+		MinesweeperBoard board = new MinesweeperBoard(ROWS, COLS, MINES, seed);
+		MinesweeperAlg alg = new MinesweeperAlg(board);
+		alg.setExactProbability(exact);
+		if (rec != null)
+			rec.startGame(board, false);
+		IntList first = board.revealBeginning();
+		if (rec != null)
+			rec.opened(first, board);
+		int moves = 1;
+		int guesses = 0;
+		IntList safe = new IntList();
+		MinesweeperMoves batch = new MinesweeperMoves(board);
+		while (!board.isFinished()) {
+			alg.update();
+			double[][] values = alg.calculateProbability();
+
+			/**
+			 * Find the squares that are known to be safe, and the square that is least
+			 * 		likely to be a mine in case there are none.
+			 */
+			safe.clear();
+			int hidden = 0;
+			int knownMines = 0;
+			for (int i=0;i<ROWS;i++) {
+				for (int j=0;j<COLS;j++) {
+					if (!board.isUnrevealed(i, j))
+						continue;
+					hidden++;
+					if (values[i][j] == 0)
+						safe.add(i*COLS+j);
+					else if (values[i][j] == 1)
+						knownMines++;
+				}
+			}
+			if (safe.isEmpty()) {
+				double density = hidden > knownMines ? (double)(MINES - knownMines) / (hidden - knownMines) : 1;
+				int best = -1;
+				double bestValue = 2;
+				for (int i=0;i<ROWS;i++) {
+					for (int j=0;j<COLS;j++) {
+						if (!board.isUnrevealed(i, j) || values[i][j] == 1)
+							continue;
+						double v = values[i][j] < 0 ? density : alg.isScaled() ? alg.getEstimate(i, j) : values[i][j];
+						if (v < bestValue) {
+							bestValue = v;
+							best = i*COLS+j;
+						}
+					}
+				}
+				if (best < 0)
+					break;
+				safe.add(best);
+				guesses++;
+			}
+			batch.clear();
+			for (int k=0;k<safe.size();k++)
+				batch.reveal(safe.get(k) / COLS, safe.get(k) % COLS);
+			board.play(batch);
+			if (rec != null)
+				rec.played(batch);
+			moves += batch.getApplied();
+		}
+		if (rec != null)
+			rec.endGame(board);
+		return new Result(board.isWon(), moves, guesses, System.nanoTime() - start);
+	}
+
+	/**
+	 * Play one game on a MinesweeperInfiniteBoard. Squares outside the window the algorithm
+	 * 		knows nothing about are given the density of the mines, and guesses that are
+	 * 		equally likely to be mines are made closest to the middle of the window.
+	 *
+	 * @param seed, seed of the board
+	 * @return Result
+	 * @throws IOException if the spill file of the board cannot be made
+	 */
+	private Result playInfinite(long seed) throws IOException {
+		long start = System.nanoTime();
+		int moves = 1;
+		int guesses = 0;
+		IntList safe = new IntList();
+		try (MinesweeperInfiniteBoard board = new MinesweeperInfiniteBoard(seed, DENSITY)) {
+			board.revealBeginning();
+			int fx = 0;
+			int fy = 0;
+			while (!board.isFinished() && board.getRevealed() < GOAL) {
+				int x0 = fx - WINDOW/2;
+				int y0 = fy - WINDOW/2;
+				MinesweeperAlg alg = new MinesweeperAlg(board.window(x0, y0, WINDOW, WINDOW));
+				alg.setExactProbability(false);
+				alg.update();
+				double[][] values = alg.calculateProbability();
+
+				/**
+				 * Same as in play(), but only the squares that are hidden on the infinite
+				 * 		board count, since the edge of the window is always hidden.
+				 */
+				safe.clear();
+				int best = -1;
+				double bestValue = 2;
+				int bestDistance = Integer.MAX_VALUE;
+				for (int i=0;i<WINDOW;i++) {
+					for (int j=0;j<WINDOW;j++) {
+						if (!board.isUnrevealed(x0+i, y0+j) || values[i][j] == 1)
+							continue;
+						if (values[i][j] == 0) {
+							safe.add(i*WINDOW+j);
+							continue;
+						}
+						double v = values[i][j] < 0 ? DENSITY : alg.isScaled() ? alg.getEstimate(i, j) : values[i][j];
+						int distance = (i-WINDOW/2)*(i-WINDOW/2) + (j-WINDOW/2)*(j-WINDOW/2);
+						if (v < bestValue || v == bestValue && distance < bestDistance) {
+							bestValue = v;
+							bestDistance = distance;
+							best = i*WINDOW+j;
+						}
+					}
+				}
+				if (safe.isEmpty()) {
+					if (best < 0) {
+						fx += WINDOW - 2;
+						continue;
+					}
+					safe.add(best);
+					guesses++;
+				}
+				for (int k=0;k<safe.size() && !board.isFinished();k++) {
+					fx = x0 + safe.get(k) / WINDOW;
+					fy = y0 + safe.get(k) % WINDOW;
+					board.reveal(fx, fy);
+					moves++;
+				}
+			}
+			return new Result(!board.isFinished(), moves, guesses, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Play many games at the same time.
+	 *
+	 * @param games, number of games
+	 * @param seed, seed the seeds of the games are drawn from
+	 * @param pool, pool to play the games on
+	 * @return Result[], result of every game in the order of the seeds
+	 */
+	public Result[] playAll(int games, long seed, ForkJoinPool pool) {
+		try {
+			return playAll(games, seed, pool, null);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Play many games at the same time, recording them. Every game is recorded in memory by
+	 * 		the thread that plays it, and BATCH games at a time are added to out in the order
+	 * 		of the seeds.
+	 *
+	 * @param games, number of games
+	 * @param seed, seed the seeds of the games are drawn from
+	 * @param pool, pool to play the games on
+	 * @param out, where the games are written, or null
+	 * @return Result[], result of every game in the order of the seeds
+	 * @throws IOException
+	 */
+	public Result[] playAll(int games, long seed, ForkJoinPool pool, MinesweeperRecordWriter out) throws IOException {
+		SplittableRandom rng = new SplittableRandom(seed);
+		long[] seeds = new long[games];
+		for (int k=0;k<games;k++)
+			seeds[k] = rng.nextLong();
+		if (out == null)
+			return pool.submit(() -> IntStream.range(0, games).parallel()
+					.mapToObj(k -> play(seeds[k]))
+					.toArray(Result[]::new)).join();
+
+		Result[] results = new Result[games];
+		byte[][] records = new byte[Math.min(games, BATCH)][];
+		for (int from=0;from<games;from+=BATCH) {
+			int start = from;
+			int end = Math.min(games, from + BATCH);
+			pool.submit(() -> IntStream.range(start, end).parallel().forEach(k -> {
+				MinesweeperRecordWriter rec = new MinesweeperRecordWriter();
+				try {
+					results[k] = play(seeds[k], rec);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+				records[k - start] = rec.toByteArray();
+			})).join();
+			for (int k=start;k<end;k++) {
+				out.append(records[k - start]);
+				records[k - start] = null;
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Read a file of games and print how many there are, the win rate, the moves per game
+	 * 		and how fast the file was read.
+	 *
+	 * @param path
+	 * @throws IOException
+	 */
+	public static void scan(Path path) throws IOException {
+		long start = System.nanoTime();
+		long games = 0;
+		long wins = 0;
+		long moves = 0;
+		try (MinesweeperRecordReader in = MinesweeperRecordReader.open(path)) {
+			while (in.next()) {
+				games++;
+				if (in.isWon())
+					wins++;
+				while (in.nextMove())
+					moves++;
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(path+": "+games+" games in "+String.format("%.2f", seconds)+" s");
+		if (games == 0)
+			return;
+		System.out.println(String.format("  win rate          %.2f%%", 100.0 * wins / games));
+		System.out.println(String.format("  moves per game    %.2f", (double)moves / games));
+		System.out.println(String.format("  bytes per game    %.2f", (double)Files.size(path) / games));
+		System.out.println(String.format("  MB per second     %.0f", Files.size(path) / 1e6 / seconds));
+	}
+
+	/**
+	 * Print win rate, guesses per game, throughput and the latency percentiles of a run.
+	 *
+	 * @param name, name of the difficulty
+	 * @param results
+	 * @param wallNanos, time the whole run took
+	 */
+	private static void report(String name, Result[] results, long wallNanos) {
+		int n = results.length;
+		long wins = 0;
+		long moves = 0;
+		long guesses = 0;
+		long[] nanos = new long[n];
+		for (int k=0;k<n;k++) {
+			if (results[k].won)
+				wins++;
+			moves += results[k].moves;
+			guesses += results[k].guesses;
+			nanos[k] = results[k].nanos;
+		}
+		Arrays.sort(nanos);
+		double seconds = wallNanos / 1e9;
+		System.out.println(name+": "+n+" games in "+String.format("%.2f", seconds)+" s");
+		System.out.println(String.format("  win rate          %.2f%%", 100.0 * wins / n));
+		System.out.println(String.format("  guesses per game  %.3f", (double)guesses / n));
+		System.out.println(String.format("  games per minute  %.0f", n / seconds * 60));
+		System.out.println(String.format("  moves per second  %.0f", moves / seconds));
+		System.out.println(String.format("  latency (us)      p50 %.1f  p90 %.1f  p99 %.1f  max %.1f",
+				percentile(nanos, 50) / 1e3, percentile(nanos, 90) / 1e3,
+				percentile(nanos, 99) / 1e3, nanos[n-1] / 1e3));
+	}
+
+	/**
+	 * @param sorted, values in increasing order
+	 * @param p, percent
+	 * @return value that p percent of the values are at most, by nearest rank
+	 */
+	private static long percentile(long[] sorted, double p) {
+		int rank = (int)Math.ceil(p / 100 * sorted.length);
+		return sorted[Math.max(rank, 1) - 1];
+	}
+
+	public static void main(String[] args) throws IOException {
+		int games = 10000;
+		long seed = 1;
+		int threads = Runtime.getRuntime().availableProcessors();
+		boolean exact = true;
+		long goal = 10000;
+		Path record = null;
+		Path scan = null;
+		ArrayList<String> difficulties = new ArrayList<String>();
+		for (int k=0;k<args.length;k++) {
+			switch (args[k]) {
+			case "--games": games = Integer.parseInt(args[++k]); break;
+			case "--seed": seed = Long.parseLong(args[++k]); break;
+			case "--threads": threads = Integer.parseInt(args[++k]); break;
+			case "--heuristic": exact = false; break;
+			case "--goal": goal = Long.parseLong(args[++k]); break;
+			case "--record": record = Path.of(args[++k]); break;
+			case "--scan": scan = Path.of(args[++k]); break;
+			case "--metrics": MinesweeperMetrics.get().setEnabled(true); break;
+			default: difficulties.add(args[k]);
+			}
+		}
+		if (scan != null) {
+			scan(scan);
+			return;
+		}
+		if (games < 1 || threads < 1 || goal < 1)
+			throw new IllegalArgumentException("Number of games, threads and squares to reveal must be positive!");
+		if (difficulties.isEmpty())
+			difficulties.addAll(Arrays.asList(NAMES));
+		if (record != null)
+			for (String d : difficulties)
+				if (density(d) > 0)
+					throw new IllegalArgumentException("Infinite games cannot be recorded!");
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		MinesweeperRecordWriter out = record != null ? MinesweeperRecordWriter.open(record) : null;
+		try {
+			for (String d : difficulties) {
+				MinesweeperSimulator sim;
+				if (density(d) > 0) {
+					sim = new MinesweeperSimulator(density(d), goal);
+				} else {
+					int[] size = size(d);
+					sim = new MinesweeperSimulator(size[0], size[1], size[2], exact);
+				}
+				long start = System.nanoTime();
+				MinesweeperMetrics.get().reset();
+				Result[] results = sim.playAll(games, seed, pool, out);
+				report(d, results, System.nanoTime() - start);
+				if (MinesweeperMetrics.get().isEnabled())
+					MinesweeperMetrics.print();
+			}
+		} finally {
+			pool.shutdown();
+			if (out != null)
+				out.close();
+		}
+	}
+
+	/**
+	 * Helper method to find the density of the mines of an infinite difficulty
+	 *
+	 * @param d, name of a difficulty
+	 * @return density of the mines, 0 if the difficulty is not infinite
+	 */
+	private static double density(String d) {
+		if (d.equalsIgnoreCase("infinite"))
+			return 0.2;
+		if (d.toLowerCase().startsWith("infinite:"))
+			return Double.parseDouble(d.substring(9));
+		return 0;
+	}
+
+	/**
+	 * Helper method to find the board size of a difficulty
+	 *
+	 * @param d, name of a difficulty or RxCxM
+	 * @return int[] of rows, columns and mines
+	 */
+	private static int[] size(String d) {
+		for (int k=0;k<NAMES.length;k++)
+			if (NAMES[k].equalsIgnoreCase(d))
+				return SIZES[k];
+		String[] parts = d.split("x");
+		if (parts.length != 3)
+			throw new IllegalArgumentException("Unknown difficulty "+d+"!");
+		return new int[] {Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])};
+	}
+}
@@ -0,0 +1,192 @@
+import java.nio.ByteBuffer;
+import java.util.function.LongFunction;
+import java.util.random.RandomGenerator;
+
+/**
+ * Snapshot of a MinesweeperBoard, taken with MinesweeperBoard.snapshot(). It never changes,
+ * 		so any number of threads, such as solvers, a view or a recorder, can read it at the
+ * 		same time without locks while the game goes on changing the board.
+ *
+ * The squares are stored in the chunks of the board they were taken from, which the board
+ * 		copies before it changes them, so a snapshot costs one reference for every chunk.
+ *
+ * @author Haoxian (Roger) Hu
+ */
+public final class MinesweeperSnapshot {
+
+	//Information on the board itself
+	private final int ROWS;
+	private final int COLS;
+	private final int MINES;
+
+	//Squares of the board, in the chunks of MinesweeperBoard, which are never changed
+	final byte[][] chunks;
+
+	//Where chunks that are null are read from, the same as in MinesweeperBoard
+	final ByteBuffer source;
+
+	//Squares near every square
+	private final Neighbours near;
+
+	//Seed of the board and how its random number generator is made
+	private final long seed;
+	final LongFunction<RandomGenerator> generators;
+
+	//State of the game
+	final boolean revealedBeginning;
+	private final boolean finished;
+	private final boolean won;
+
+	//Counts the board keeps to decide whether the game is won, the same as in MinesweeperBoard
+	final int hiddenSafe;
+	final int markedMines;
+	final int wrongMarks;
+
+	/**
+	 * Constructor, only called by MinesweeperBoard
+	 */
+	MinesweeperSnapshot(int r, int c, int s, byte[][] ch, ByteBuffer src, Neighbours n, long sd,
+			LongFunction<RandomGenerator> gen, boolean rb, boolean f, boolean w, int hs, int mm, int wm) {
+		ROWS = r;
+		COLS = c;
+		MINES = s;
+		chunks = ch;
+		source = src;
+		near = n;
+		seed = sd;
+		generators = gen;
+		revealedBeginning = rb;
+		finished = f;
+		won = w;
+		hiddenSafe = hs;
+		markedMines = mm;
+		wrongMarks = wm;
+	}
+
+	public int getRows() {
+		return ROWS;
+	}
+
+	public int getCols() {
+		return COLS;
+	}
+
+	public int getMines() {
+		return MINES;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * @return table of the squares near every square
+	 */
+	public Neighbours getNeighbours() {
+		return near;
+	}
+
+	/**
+	 * @return true if the user had either won or stepped on a mine
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * @return true if the game was finished and the user won
+	 */
+	public boolean isWon() {
+		return won;
+	}
+
+	/**
+	 * Same as MinesweeperBoard.isNumAndRevealed()
+	 * @param n, position stored as row*COLS+column
+	 * @return boolean
+	 */
+	public boolean isNumAndRevealed(int n) {
+		return (cell(n) & (MinesweeperBoard.MINE | MinesweeperBoard.REVEALED)) == MinesweeperBoard.REVEALED;
+	}
+
+	public boolean isNumAndRevealed(int x, int y) {
+		return isNumAndRevealed(x*COLS+y);
+	}
+
+	/**
+	 * Same as MinesweeperBoard.isUnrevealed()
+	 * @param n, position stored as row*COLS+column
+	 * @return boolean
+	 */
+	public boolean isUnrevealed(int n) {
+		return (cell(n) & MinesweeperBoard.REVEALED) == 0;
+	}
+
+	public boolean isUnrevealed(int x, int y) {
+		return isUnrevealed(x*COLS+y);
+	}
+
+	/**
+	 * Same as MinesweeperBoard.getNum()
+	 * @param n, position stored as row*COLS+column
+	 * @return value of a revealed square
+	 */
+	public int getNum(int n) {
+		int cell = cell(n);
+		if ((cell & MinesweeperBoard.REVEALED) == 0)
+			throw new RuntimeException("Illegal attempt to get number!");
+		return (cell & MinesweeperBoard.MINE) != 0 ? -1 : cell & MinesweeperBoard.NUM;
+	}
+
+	public int getNum(int x, int y) {
+		return getNum(x*COLS+y);
+	}
+
+	/**
+	 * Same as MinesweeperBoard.isMarked()
+	 * @param x, row index
+	 * @param y, column index
+	 * @return boolean
+	 */
+	public boolean isMarked(int x, int y) {
+		return (cell(x*COLS+y) & MinesweeperBoard.MARKED) != 0;
+	}
+
+	/**
+	 * Same as MinesweeperBoard.getValue(), for views and recorders
+	 * @param x, row index
+	 * @param y, column index
+	 * @return value of a square, -1 if the square is a mine
+	 */
+	public int getValue(int x, int y) {
+		int cell = cell(x*COLS+y);
+		return (cell & MinesweeperBoard.MINE) != 0 ? -1 : cell & MinesweeperBoard.NUM;
+	}
+
+	/**
+	 * Copy of a chunk, read from the source if the chunk is null. Chunks that are not null
+	 * 		are returned as they are and must not be changed.
+	 *
+	 * @param k, index of the chunk
+	 * @return byte[]
+	 */
+	byte[] chunk(int k) {
+		if (chunks[k] != null)
+			return chunks[k];
+		byte[] chunk = new byte[Math.min(MinesweeperBoard.CHUNK_MASK + 1, ROWS * COLS - (k << MinesweeperBoard.CHUNK_SHIFT))];
+		source.get(k << MinesweeperBoard.CHUNK_SHIFT, chunk);
+		return chunk;
+	}
+
+	/**
+	 * Helper method to read the byte of a square. Chunks that the board had not read yet
+	 * 		are read straight from the source, which is never changed, so this is safe on
+	 * 		any thread.
+	 */
+	private int cell(int n) {
+		byte[] chunk = chunks[n >>> MinesweeperBoard.CHUNK_SHIFT];
+		if (chunk == null)
+			return source.get(n);
+		return chunk[n & MinesweeperBoard.CHUNK_MASK];
+	}
+}
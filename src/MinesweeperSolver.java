@@ -0,0 +1,160 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Runs MinesweeperAlg on a background thread, so that the thread of the game never waits
+ * 		for it.
+ *
+ * The algorithm works on its own board, which only the background thread touches. When
+ * 		solve() is called, a snapshot of the board of the game is taken on the calling
+ * 		thread, which copies no squares, and the background thread brings its board up to
+ * 		date with the snapshot, looking only at the chunks that changed. The algorithm listens
+ * 		to that board, so it still only has to look at the squares that changed, like it
+ * 		does when it listens to the board of the game.
+ *
+ * Only the latest call of solve() matters. A new call cancels the one that is running,
+ * 		and a result is only handed back if no other call has been made since. The running
+ * 		call checks the generation it was made for while it runs, so it stops however soon
+ * 		after it started the new call is made.
+ *
+ * @author Haoxian (Roger) Hu
+ */
+public final class MinesweeperSolver {
+
+	//Thread every solver runs on, which does not keep the program running when the game is closed
+	private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "minesweeper-solver");
+		t.setDaemon(true);
+		return t;
+	});
+
+	//Board and algorithm, only used on the background thread
+	private MinesweeperBoard board;
+	private MinesweeperAlg alg;
+
+	//Where results are handed back, for example Platform::runLater
+	private Executor post;
+
+	//Number of the latest call of solve() or cancel(), results of earlier calls are thrown away
+	private volatile long generation = 0;
+
+	/**
+	 * Constructor. Only a snapshot is taken here, the board and the algorithm are made on
+	 * 		the background thread.
+	 *
+	 * @param bboard, board of the game, as it is now
+	 * @param ppost, runs the code that hands back results, for example Platform::runLater
+	 * 		so that they are handed back on the JavaFX thread
+	 */
+	public MinesweeperSolver(MinesweeperBoard bboard, Executor ppost) {
+		this(bboard.snapshot(), null, ppost);
+	}
+
+	/**
+	 * Constructor, going on from what was found out before a game was saved. The
+	 * 		algorithm does not look through every number of the board, only the ones near
+	 * 		the squares that changed since the game was loaded, so the squares of the save
+	 * 		are only read as the algorithm needs them.
+	 *
+	 * @param start, snapshot of the board of the saved game, taken before any move was made
+	 * @param saved, saved game, or null to start from nothing
+	 * @param ppost, runs the code that hands back results, for example Platform::runLater
+	 */
+	public MinesweeperSolver(MinesweeperSnapshot start, MinesweeperSave saved, Executor ppost) {
+		post = ppost;
+		EXECUTOR.execute(() -> {
+			board = new MinesweeperBoard(start);
+			boolean restore = saved != null && saved.hasDeductions();
+			alg = new MinesweeperAlg(board, !restore);
+			if (restore)
+				saved.restore(alg);
+		});
+	}
+
+	/**
+	 * Find the probability of every square of the board containing a mine in the
+	 * 		background. Must be called on the thread that changes the board, since the
+	 * 		snapshot is taken here.
+	 *
+	 * @param game, board of the game
+	 * @param done, given the result of MinesweeperAlg.calculateProbability(), on the
+	 * 		thread of post, unless solve() or cancel() is called again before then
+	 */
+	public void solve(MinesweeperBoard game, Consumer<double[][]> done) {
+		MinesweeperSnapshot snapshot = game.snapshot();
+		long gen = next();
+		EXECUTOR.execute(() -> {
+			if (generation != gen)
+				return;
+			alg.setCancelCheck(() -> generation != gen);
+			board.copyFrom(snapshot);
+			double[][] values;
+			try {
+				alg.update();
+				values = alg.calculateProbability();
+			} catch (CancellationException e) {
+				return;
+			}
+			post.execute(() -> {
+				if (generation == gen)
+					done.accept(values);
+			});
+		});
+	}
+
+	/**
+	 * Save the board of the game together with what the algorithm has found out, with
+	 * 		MinesweeperSave. The call of solve() that is running is cancelled, and the board
+	 * 		of the algorithm is brought up to date and saved on the background thread, which
+	 * 		this waits for. update() is run to the end first, so no number is left that the
+	 * 		algorithm still has to look at, and a solver made from the save does not have to
+	 * 		look through the numbers again. Must be called on the same thread as solve().
+	 *
+	 * @param path
+	 * @param game, board of the game
+	 * @throws IOException
+	 */
+	public void save(Path path, MinesweeperBoard game) throws IOException {
+		MinesweeperSnapshot snapshot = game.snapshot();
+		next();
+		try {
+			EXECUTOR.submit(() -> {
+				board.copyFrom(snapshot);
+				alg.setCancelCheck(() -> false);
+				alg.update();
+				MinesweeperSave.save(path, board, alg);
+				return null;
+			}).get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException)e.getCause();
+			throw new IllegalStateException("Could not save the game!", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Saving the game was interrupted!", e);
+		}
+	}
+
+	/**
+	 * Stop the call of solve() that is running, if any, and throw away the results of every
+	 * 		call made so far. Must be called on the same thread as solve().
+	 */
+	public void cancel() {
+		next();
+	}
+
+	/**
+	 * Helper method to cancel everything so far and start a new generation
+	 *
+	 * @return number of the new generation
+	 */
+	private long next() {
+		return ++generation;
+	}
+}
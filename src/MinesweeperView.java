@@ -0,0 +1,75 @@
+
+import javafx.scene.layout.Pane;
+
+/**
+ * Interface for the ways a MinesweeperBoard can be shown on screen. The view is placed at
+ * 		(25, 25) in the pane of the game and takes getWidth() by getHeight() pixels.
+ *
+ * @author Haoxian (Roger) Hu
+ */
+public interface MinesweeperView extends MinesweeperListener {
+
+	//Number of steps in the spectrum from green to red used to colour squares with the algorithm
+	int RISK_LEVELS = 20;
+
+	/**
+	 * Add the nodes of this view to the pane of the game
+	 * @param pane
+	 */
+	void addTo(Pane pane);
+
+	/**
+	 * @return width of the view in pixels
+	 */
+	double getWidth();
+
+	/**
+	 * @return height of the view in pixels
+	 */
+	double getHeight();
+
+	/**
+	 * Find the square that is shown at a position of the scene
+	 * @param sceneX
+	 * @param sceneY
+	 * @return int[] {row index, column index}, or null if there is no square there
+	 */
+	int[] cellAt(double sceneX, double sceneY);
+
+	/**
+	 * Called after a user input to show the changes to the board. The colours from the
+	 * 		algorithm stay as they are until showProbability() is called, except on squares
+	 * 		that have been revealed.
+	 *
+	 * @param sfn the main class
+	 */
+	void updateStatus(Minesweeper sfn);
+
+	/**
+	 * Called when the algorithm has a result, or when the user stops the algorithm, to
+	 * 		replace the colours from the algorithm and show them.
+	 *
+	 * @param sfn the main class
+	 * @param values, result of MinesweeperAlg.calculateProbability(), or null to remove
+	 * 		the colours
+	 */
+	void showProbability(Minesweeper sfn, double[][] values);
+
+	/**
+	 * Helper method to turn a value from the algorithm into the colour of a square. 0 means
+	 * 		no colour, 1 safe, 2 certain mine, and 3 to 3+RISK_LEVELS-1 the spectrum from
+	 * 		green to red.
+	 * @param value, probability from the algorithm, negative if it has no data
+	 * @param marked, whether the square is marked by the user
+	 * @return int as stated above
+	 */
+	static int riskOf(double value, boolean marked) {
+		if (value < 0)
+			return 0;
+		if (value == 0)
+			return 1;
+		if (value == 1)
+			return marked ? 0 : 2;
+		return 3 + Math.max(0, Math.min(RISK_LEVELS-1, (int)(value * RISK_LEVELS)));
+	}
+}
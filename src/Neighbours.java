@@ -0,0 +1,83 @@
+/**
+ * Table of the squares near every square of a board, for positions stored as row*COLS+column.
+ *
+ * Instead of checking the bounds of the board for each of the 8 squares near a square, the
+ * 		offsets to add to a position are worked out once for each of the 16 kinds of square
+ * 		(whether it is on the first row, the last row, the first column and the last
+ * 		column). Finding the kind of a square takes a few comparisons, and the loop over its
+ * 		offsets then has no checks left in it:
+ *
+ * 		for (int d : near.of(n)) {
+ * 			int m = n + d;
+ * 			...
+ * 		}
+ *
+ * The arrays are shared and never change, so going through the squares near a square does
+ * 		not allocate anything, and one table can be used by many threads.
+ *
+ * @author Haoxian (Roger) Hu
+ */
+public final class Neighbours {
+
+	//Board size
+	private final int ROWS;
+	private final int COLS;
+
+	//Offsets of the squares near a square of every kind, in increasing order
+	private final int[][] offsets = new int[16][];
+
+	/**
+	 * Constructor
+	 *
+	 * @param r, number of rows
+	 * @param c, number of columns
+	 */
+	public Neighbours(int r, int c) {
+		ROWS = r;
+		COLS = c;
+		for (int kind=0;kind<16;kind++) {
+			int[] offs = new int[8];
+			int size = 0;
+			for (int i=-1;i<=1;i++) {
+				if (i == -1 && (kind & 1) != 0 || i == 1 && (kind & 2) != 0)
+					continue;
+				for (int j=-1;j<=1;j++) {
+					if (j == -1 && (kind & 4) != 0 || j == 1 && (kind & 8) != 0 || i == 0 && j == 0)
+						continue;
+					offs[size++] = i*COLS+j;
+				}
+			}
+			offsets[kind] = java.util.Arrays.copyOf(offs, size);
+		}
+	}
+
+	/**
+	 * Offsets to add to a position to get the squares near it. The array must not be changed.
+	 *
+	 * @param n, position stored as row*COLS+column
+	 * @return int[] of offsets
+	 */
+	public int[] of(int n) {
+		int x = n / COLS;
+		int y = n - x * COLS;
+		return offsets[kind(x, y)];
+	}
+
+	/**
+	 * Same as of(), when the row and column are already known.
+	 *
+	 * @param x, row index
+	 * @param y, column index
+	 * @return int[] of offsets
+	 */
+	public int[] of(int x, int y) {
+		return offsets[kind(x, y)];
+	}
+
+	/**
+	 * Helper method to find which of the 16 kinds a square is.
+	 */
+	private int kind(int x, int y) {
+		return (x == 0 ? 1 : 0) | (x == ROWS-1 ? 2 : 0) | (y == 0 ? 4 : 0) | (y == COLS-1 ? 8 : 0);
+	}
+}